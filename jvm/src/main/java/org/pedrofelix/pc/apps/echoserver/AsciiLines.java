@@ -0,0 +1,95 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level helpers for the line protocol, used to echo ASCII lines without creating {@link String}s.
+ */
+public final class AsciiLines {
+
+    private AsciiLines() {
+        // static class
+    }
+
+    public static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // Enough for the digits of any non-negative int
+    public static final int MAX_DECIMAL_LENGTH = 10;
+
+    /**
+     * Returns the index of the first '\n' in {@code bytes[from, to[}, or -1 if there is none.
+     */
+    public static int indexOfLineFeed(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of the line content ending at the '\n' in {@code lineFeedIndex}, removing an optional '\r'.
+     */
+    public static int lineEnd(byte[] bytes, int from, int lineFeedIndex) {
+        return lineFeedIndex > from && bytes[lineFeedIndex - 1] == '\r' ? lineFeedIndex - 1 : lineFeedIndex;
+    }
+
+    /**
+     * Converts the ASCII letters in {@code bytes[from, to[} to upper-case, in place.
+     *
+     * @return {@code false} if a non-ASCII byte was found, in which case the conversion stops there
+     * and the line must be handled as a full Unicode string.
+     */
+    public static boolean toUpperCaseAscii(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            byte b = bytes[i];
+            if (b < 0) {
+                return false;
+            }
+            if (b >= 'a' && b <= 'z') {
+                bytes[i] = (byte) (b - ('a' - 'A'));
+            }
+        }
+        return true;
+    }
+
+    public static boolean equalsAscii(byte[] bytes, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; ++i) {
+            if (bytes[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int decimalLength(int value) {
+        int length = 1;
+        while (value >= 10) {
+            value /= 10;
+            length += 1;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the decimal digits of the non-negative {@code value} into {@code dst}, starting at {@code offset}.
+     *
+     * @return the offset after the last written digit.
+     */
+    public static int putDecimal(int value, byte[] dst, int offset) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be non-negative");
+        }
+        int end = offset + decimalLength(value);
+        int i = end;
+        do {
+            dst[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+}
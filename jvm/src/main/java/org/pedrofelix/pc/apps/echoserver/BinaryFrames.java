@@ -0,0 +1,56 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary framing mode, as an alternative to the line protocol for clients sending many small messages.
+ * After receiving the greeting line, a client selects this mode by sending {@link #MAGIC} as its first byte.
+ * Each request is then a frame with a 4 byte payload length, a 4 byte request ID and the payload,
+ * with integers in big-endian order. The reply to a frame is the same frame, i.e., same request ID and payload,
+ * so a client can have many requests in flight and match the replies by request ID.
+ */
+public final class BinaryFrames {
+
+    private BinaryFrames() {
+        // static class
+    }
+
+    // a line never starts with a NUL byte
+    public static final byte MAGIC = 0;
+
+    public static final int HEADER_LENGTH = 8;
+    public static final int REQUEST_ID_OFFSET = 4;
+
+    /**
+     * Returns the end index of the complete frames in {@code buffer[buffer.position(), buffer.limit()[},
+     * which is {@code buffer.position()} if there is no complete frame. Does not change the buffer.
+     *
+     * @throws IOException if a frame has a negative length or a length greater than {@code maxPayloadLength}.
+     */
+    public static int completeFramesEnd(ByteBuffer buffer, int maxPayloadLength) throws IOException {
+        int end = buffer.position();
+        while (buffer.limit() - end >= HEADER_LENGTH) {
+            int payloadLength = buffer.getInt(end);
+            if (payloadLength < 0 || payloadLength > maxPayloadLength) {
+                throw new IOException(String.format("invalid frame length %d", payloadLength));
+            }
+            if (buffer.limit() - end < HEADER_LENGTH + payloadLength) {
+                break;
+            }
+            end += HEADER_LENGTH + payloadLength;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the number of frames in {@code buffer[from, to[}, which must only contain complete frames.
+     */
+    public static int countFrames(ByteBuffer buffer, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i += HEADER_LENGTH + buffer.getInt(i)) {
+            count += 1;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,257 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Echo loop working directly over bytes, as an alternative to the
+ * {@link java.io.BufferedReader} and {@link java.io.BufferedWriter} based loops.
+ * Lines are found by scanning for '\n' in a reusable input buffer, ASCII lines are upper-cased in place,
+ * and replies are assembled in a reusable output buffer, so echoing an ASCII line does not allocate.
+ * Lines with non-ASCII bytes fall back to a {@link String} based conversion.
+ * With a coalescing {@link FlushPolicy}, replies to pipelined lines are sent together, when there are no more
+ * complete lines in the input buffer or when a size or time threshold is reached, instead of once per line.
+ * Not thread-safe, each connection must use its own instance.
+ */
+public class ByteEchoEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ByteEchoEngine.class);
+    private static final byte[] EXIT_LINE = "exit".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BYE_LINE = "Bye.".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATS_LINE = "stats".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_NUMBER_SEPARATOR = ": ".getBytes(StandardCharsets.US_ASCII);
+
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024;
+    public static final int DEFAULT_MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final TranscriptLog transcriptLog = Utils.transcriptLog();
+
+    /**
+     * Defines when the replies are written into the output stream.
+     */
+    public static final class FlushPolicy {
+
+        private static final FlushPolicy PER_LINE = new FlushPolicy(0, 0);
+
+        private final int maxPendingBytes;
+        private final long maxPendingTimeInMs;
+
+        private FlushPolicy(int maxPendingBytes, long maxPendingTimeInMs) {
+            this.maxPendingBytes = maxPendingBytes;
+            this.maxPendingTimeInMs = maxPendingTimeInMs;
+        }
+
+        /**
+         * Flushes after each reply, i.e., the behavior of {@link Utils#writeLine}.
+         */
+        public static FlushPolicy perLine() {
+            return PER_LINE;
+        }
+
+        /**
+         * Flushes when there are no more complete lines to process, or when the pending replies
+         * reach {@code maxPendingBytes}, or have been pending for {@code maxPendingTimeInMs}.
+         */
+        public static FlushPolicy coalescing(int maxPendingBytes, long maxPendingTimeInMs) {
+            return new FlushPolicy(maxPendingBytes, maxPendingTimeInMs);
+        }
+    }
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final Charset charset;
+    private final int maxLineLength;
+    private final FlushPolicy flushPolicy;
+    private final EchoMetrics metrics;
+
+    // bytes received and not yet processed are in input[start, end[
+    private byte[] input;
+    private int start = 0;
+    private int end = 0;
+
+    // bytes to send are in output[0, outputLength[
+    private byte[] output;
+    private int outputLength = 0;
+    // time when the oldest not flushed reply was produced
+    private long pendingSince = 0;
+
+    private int clientNo;
+    private int lineNo = 0;
+    private ConnectionStats stats;
+
+    /**
+     * @param metrics the metrics of the server owning the connection.
+     */
+    public ByteEchoEngine(InputStream inputStream, OutputStream outputStream, EchoMetrics metrics) {
+        this(inputStream, outputStream, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE, DEFAULT_MAX_LINE_LENGTH,
+                FlushPolicy.perLine(), metrics);
+    }
+
+    public ByteEchoEngine(InputStream inputStream, OutputStream outputStream, Charset charset,
+                          int bufferSize, int maxLineLength, FlushPolicy flushPolicy, EchoMetrics metrics) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.charset = charset;
+        this.maxLineLength = maxLineLength;
+        this.flushPolicy = flushPolicy;
+        this.metrics = metrics;
+        this.input = new byte[bufferSize];
+        this.output = new byte[bufferSize];
+    }
+
+    /**
+     * Sends the greeting and echoes lines until the "exit" line or the end of the input stream.
+     * The "stats" line is answered with the metrics, ending with an empty line.
+     */
+    public void run(int clientNo) throws IOException {
+        this.clientNo = clientNo;
+        this.stats = metrics.openConnectionStats(clientNo);
+        try {
+            echoLoop();
+        } finally {
+            metrics.closeConnectionStats(stats);
+        }
+    }
+
+    private void echoLoop() throws IOException {
+        appendLine(String.format("Hi! You are client number %s", Integer.toString(clientNo)).getBytes(charset));
+        flush();
+        while (true) {
+            int lineFeedIndex = AsciiLines.indexOfLineFeed(input, start, end);
+            if (lineFeedIndex == -1) {
+                // no more complete lines, so the pending replies must be sent before blocking on a read
+                flush();
+                if (!fill()) {
+                    // end of stream, where a last line without terminator is still echoed
+                    if (start < end) {
+                        echoLine(start, end);
+                        start = end;
+                    }
+                    appendLine(BYE_LINE);
+                    flush();
+                    return;
+                }
+                continue;
+            }
+            int lineEnd = AsciiLines.lineEnd(input, start, lineFeedIndex);
+            if (AsciiLines.equalsAscii(input, start, lineEnd, EXIT_LINE)) {
+                appendLine(BYE_LINE);
+                flush();
+                return;
+            }
+            if (AsciiLines.equalsAscii(input, start, lineEnd, STATS_LINE)) {
+                appendStats();
+                start = lineFeedIndex + 1;
+                continue;
+            }
+            echoLine(start, lineEnd);
+            start = lineFeedIndex + 1;
+            flushIfThresholdReached();
+        }
+    }
+
+    private void echoLine(int from, int to) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Received line '{}', echoing it back", new String(input, from, to - from, charset));
+        }
+        int number = lineNo++;
+        stats.onLine();
+        if (transcriptLog != null) {
+            transcriptLog.record(clientNo, number, input, from, to - from);
+        }
+        if (AsciiLines.toUpperCaseAscii(input, from, to)) {
+            int length = to - from;
+            ensureOutputCapacity(AsciiLines.MAX_DECIMAL_LENGTH + LINE_NUMBER_SEPARATOR.length
+                    + length + AsciiLines.LINE_SEPARATOR.length);
+            outputLength = AsciiLines.putDecimal(number, output, outputLength);
+            append(LINE_NUMBER_SEPARATOR, 0, LINE_NUMBER_SEPARATOR.length);
+            append(input, from, length);
+            append(AsciiLines.LINE_SEPARATOR, 0, AsciiLines.LINE_SEPARATOR.length);
+        } else {
+            // slow-path, for lines with non-ASCII characters
+            String line = new String(input, from, to - from, charset);
+            appendLine(String.format("%d: %s", number, line.toUpperCase()).getBytes(charset));
+        }
+    }
+
+    /**
+     * Reads more bytes into the input buffer, compacting or growing it if needed.
+     *
+     * @return {@code false} if the end of the stream was reached.
+     */
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(input, start, input, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == input.length) {
+            if (input.length >= maxLineLength) {
+                throw new IOException(String.format("line exceeds maximum length of %d bytes", maxLineLength));
+            }
+            input = Arrays.copyOf(input, Math.min(maxLineLength, 2 * input.length));
+        }
+        int readLen = inputStream.read(input, end, input.length - end);
+        if (readLen == -1) {
+            return false;
+        }
+        stats.onBytesIn(readLen);
+        end += readLen;
+        return true;
+    }
+
+    private void appendStats() {
+        for (String line : metrics.formatStats()) {
+            appendLine(line.getBytes(charset));
+        }
+        appendLine(new byte[0]);
+    }
+
+    private void appendLine(byte[] bytes) {
+        ensureOutputCapacity(bytes.length + AsciiLines.LINE_SEPARATOR.length);
+        append(bytes, 0, bytes.length);
+        append(AsciiLines.LINE_SEPARATOR, 0, AsciiLines.LINE_SEPARATOR.length);
+    }
+
+    private void append(byte[] bytes, int from, int length) {
+        System.arraycopy(bytes, from, output, outputLength, length);
+        outputLength += length;
+    }
+
+    private void ensureOutputCapacity(int length) {
+        if (output.length - outputLength < length) {
+            output = Arrays.copyOf(output, Math.max(2 * output.length, outputLength + length));
+        }
+    }
+
+    private void flushIfThresholdReached() throws IOException {
+        if (outputLength >= flushPolicy.maxPendingBytes) {
+            flush();
+            return;
+        }
+        long now = System.nanoTime();
+        if (pendingSince == 0) {
+            pendingSince = now;
+        } else if (now - pendingSince >= TimeUnit.MILLISECONDS.toNanos(flushPolicy.maxPendingTimeInMs)) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (outputLength > 0) {
+            outputStream.write(output, 0, outputLength);
+            outputStream.flush();
+            stats.onBytesOut(outputLength);
+            outputLength = 0;
+        }
+        pendingSince = 0;
+    }
+}
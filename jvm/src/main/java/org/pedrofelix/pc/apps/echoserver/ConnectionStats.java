@@ -0,0 +1,82 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Counters of a single connection.
+ * They are only updated by the thread handling the connection, so updates are plain increments
+ * published with release stores, without locks or atomic read-modify-write operations.
+ * Other threads only read them, when the statistics are requested, see {@link EchoMetrics}.
+ */
+public class ConnectionStats {
+
+    private static final VarHandle LINES;
+    private static final VarHandle BYTES_IN;
+    private static final VarHandle BYTES_OUT;
+    private static final VarHandle LAST_ACTIVITY;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            LINES = lookup.findVarHandle(ConnectionStats.class, "lines", long.class);
+            BYTES_IN = lookup.findVarHandle(ConnectionStats.class, "bytesIn", long.class);
+            BYTES_OUT = lookup.findVarHandle(ConnectionStats.class, "bytesOut", long.class);
+            LAST_ACTIVITY = lookup.findVarHandle(ConnectionStats.class, "lastActivity", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int clientNo;
+    private long lines = 0;
+    private long bytesIn = 0;
+    private long bytesOut = 0;
+    // milliseconds since the epoch
+    private long lastActivity = System.currentTimeMillis();
+
+    ConnectionStats(int clientNo) {
+        this.clientNo = clientNo;
+    }
+
+    public int getClientNo() {
+        return clientNo;
+    }
+
+    // only called by the thread handling the connection
+    public void onLine() {
+        LINES.setRelease(this, lines + 1);
+    }
+
+    // only called by the thread handling the connection
+    public void onLines(int count) {
+        LINES.setRelease(this, lines + count);
+    }
+
+    // only called by the thread handling the connection
+    public void onBytesIn(int count) {
+        BYTES_IN.setRelease(this, bytesIn + count);
+        LAST_ACTIVITY.setRelease(this, System.currentTimeMillis());
+    }
+
+    // only called by the thread handling the connection
+    public void onBytesOut(int count) {
+        BYTES_OUT.setRelease(this, bytesOut + count);
+    }
+
+    public long getLines() {
+        return (long) LINES.getAcquire(this);
+    }
+
+    public long getBytesIn() {
+        return (long) BYTES_IN.getAcquire(this);
+    }
+
+    public long getBytesOut() {
+        return (long) BYTES_OUT.getAcquire(this);
+    }
+
+    public long getLastActivity() {
+        return (long) LAST_ACTIVITY.getAcquire(this);
+    }
+}
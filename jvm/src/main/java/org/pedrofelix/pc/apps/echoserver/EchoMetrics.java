@@ -0,0 +1,129 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by all the connections of an echo server, so that servers with different concurrency models
+ * can be compared using the same metrics.
+ * Uses {@link LongAdder} because the counters are updated by many threads and rarely read.
+ * The per-connection counters are in {@link ConnectionStats}, which are only aggregated when read:
+ * the totals are the sum of the counters of the open connections and of the connections already closed.
+ */
+public class EchoMetrics {
+
+    // maximum number of connections listed by the stats command
+    private static final int MAX_LISTED_CONNECTIONS = 100;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private final Set<ConnectionStats> openConnections = ConcurrentHashMap.newKeySet();
+    private final LongAdder closedLines = new LongAdder();
+    private final LongAdder closedBytesIn = new LongAdder();
+    private final LongAdder closedBytesOut = new LongAdder();
+
+    public void onAccepted() {
+        accepted.increment();
+    }
+
+    public void onRejected() {
+        rejected.increment();
+    }
+
+    public void onStarted() {
+        active.increment();
+    }
+
+    public void onEnded(boolean isError) {
+        active.decrement();
+        closed.increment();
+        if (isError) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Creates the counters for a new connection, which must be closed with {@link #closeConnectionStats}.
+     */
+    public ConnectionStats openConnectionStats(int clientNo) {
+        var stats = new ConnectionStats(clientNo);
+        openConnections.add(stats);
+        return stats;
+    }
+
+    public void closeConnectionStats(ConnectionStats stats) {
+        if (openConnections.remove(stats)) {
+            closedLines.add(stats.getLines());
+            closedBytesIn.add(stats.getBytesIn());
+            closedBytesOut.add(stats.getBytesOut());
+        }
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getActive() {
+        return active.sum();
+    }
+
+    public long getClosed() {
+        return closed.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getLines() {
+        return closedLines.sum() + openConnections.stream().mapToLong(ConnectionStats::getLines).sum();
+    }
+
+    public long getBytesIn() {
+        return closedBytesIn.sum() + openConnections.stream().mapToLong(ConnectionStats::getBytesIn).sum();
+    }
+
+    public long getBytesOut() {
+        return closedBytesOut.sum() + openConnections.stream().mapToLong(ConnectionStats::getBytesOut).sum();
+    }
+
+    /**
+     * Returns the totals, followed by the counters of up to {@link #MAX_LISTED_CONNECTIONS} open connections,
+     * one per line.
+     */
+    public List<String> formatStats() {
+        var lines = new ArrayList<String>();
+        lines.add("stats: " + this);
+        long now = System.currentTimeMillis();
+        int listed = 0;
+        for (ConnectionStats stats : openConnections) {
+            if (listed == MAX_LISTED_CONNECTIONS) {
+                lines.add(String.format("... and %d more connections", openConnections.size() - listed));
+                break;
+            }
+            lines.add(String.format("client %d: lines=%d bytesIn=%d bytesOut=%d idleMs=%d",
+                    stats.getClientNo(), stats.getLines(), stats.getBytesIn(), stats.getBytesOut(),
+                    Math.max(0, now - stats.getLastActivity())));
+            listed += 1;
+        }
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("accepted=%d rejected=%d active=%d closed=%d errors=%d lines=%d bytesIn=%d bytesOut=%d",
+                getAccepted(), getRejected(), getActive(), getClosed(), getErrors(), getLines(),
+                getBytesIn(), getBytesOut());
+    }
+}
@@ -0,0 +1,321 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread running a selection loop over a set of echo connections, using non-blocking IO.
+ * Connections use the line protocol or, if selected by the client, the {@link BinaryFrames} protocol.
+ * Connections are handed over by an acceptor thread via a queue,
+ * because registration must happen on the reactor thread, which may be blocked on {@code select}.
+ */
+public class EchoReactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoReactor.class);
+    private static final byte[] EXIT_LINE = "exit".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATS_LINE = "stats".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_NUMBER_SEPARATOR = ": ".getBytes(StandardCharsets.US_ASCII);
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final TranscriptLog transcriptLog = Utils.transcriptLog();
+
+    private static class PendingChannel {
+        public final SocketChannel channel;
+        public final int clientNo;
+
+        public PendingChannel(SocketChannel channel, int clientNo) {
+            this.channel = channel;
+            this.clientNo = clientNo;
+        }
+    }
+
+    private final Thread thread;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<PendingChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final int bufferSize;
+    private final int maxLineLength;
+    private final EchoMetrics metrics;
+
+    public EchoReactor(int index, int bufferSize, int maxLineLength, EchoMetrics metrics) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this::selectLoop, "reactor-" + index);
+        this.bufferSize = bufferSize;
+        this.maxLineLength = maxLineLength;
+        this.metrics = metrics;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void register(SocketChannel channel, int clientNo) {
+        pendingChannels.add(new PendingChannel(channel, clientNo));
+        selector.wakeup();
+    }
+
+    private void selectLoop() {
+        while (true) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                logger.error("select failed, ending reactor", e);
+                return;
+            }
+            registerPendingChannels();
+            var selectedKeys = selector.selectedKeys();
+            for (var key : selectedKeys) {
+                var connection = (Connection) key.attachment();
+                connection.onReady();
+            }
+            selectedKeys.clear();
+        }
+    }
+
+    private void registerPendingChannels() {
+        PendingChannel pending;
+        while ((pending = pendingChannels.poll()) != null) {
+            var channel = pending.channel;
+            try {
+                channel.configureBlocking(false);
+                var connection = new Connection(channel, pending.clientNo);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                metrics.onStarted();
+                connection.start();
+            } catch (IOException e) {
+                logger.warn("Unable to register connection: {}", e.getMessage());
+                closeSilently(channel);
+            }
+        }
+    }
+
+    /**
+     * The state of a connection, only accessed by the reactor thread that owns it.
+     */
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final int clientNo;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(bufferSize);
+        private final LineDecoder decoder = new LineDecoder(bufferSize, maxLineLength);
+        // in read mode, i.e., ready to be written into the channel
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(bufferSize).flip();
+        private SelectionKey key;
+        private ConnectionStats stats;
+        private int lineNo = 0;
+        private boolean isClosing = false;
+        // the protocol is selected by the first received byte
+        private boolean isProtocolSelected = false;
+        private boolean isBinary = false;
+
+        Connection(SocketChannel channel, int clientNo) {
+            this.channel = channel;
+            this.clientNo = clientNo;
+        }
+
+        // called after the registration, so the stats are always closed by close
+        void start() {
+            stats = metrics.openConnectionStats(clientNo);
+            writeLine(String.format("Hi! You are client number %s", Integer.toString(clientNo)));
+            flushAndUpdateInterest();
+        }
+
+        void onReady() {
+            try {
+                if (key.isReadable()) {
+                    int readLen = channel.read(readBuffer);
+                    if (readLen == -1) {
+                        if (!isBinary) {
+                            // a last line without terminator is still echoed, as in ByteEchoEngine
+                            if (decoder.finishLine()) {
+                                writeReply(decoder.lineBytes(), decoder.lineLength());
+                                decoder.clearLine();
+                            }
+                            writeLine("Bye.");
+                        }
+                        isClosing = true;
+                    } else {
+                        stats.onBytesIn(readLen);
+                        readBuffer.flip();
+                        selectProtocol();
+                        if (isBinary) {
+                            processFrames();
+                        } else {
+                            processInput();
+                            readBuffer.clear();
+                        }
+                    }
+                }
+                flushAndUpdateInterest();
+            } catch (IOException e) {
+                logger.warn("Connection ended with IO error: {}", e.getMessage());
+                close(true);
+            }
+        }
+
+        private void selectProtocol() {
+            if (isProtocolSelected || !readBuffer.hasRemaining()) {
+                return;
+            }
+            isProtocolSelected = true;
+            if (readBuffer.get(readBuffer.position()) == BinaryFrames.MAGIC) {
+                readBuffer.get();
+                isBinary = true;
+            }
+        }
+
+        /**
+         * Echoes all the complete frames in the read buffer with a single write, directly from the read buffer.
+         * Only the bytes not accepted by the channel are copied, into the write buffer.
+         * Leaves an incomplete frame at the start of the read buffer, in write mode, ready for the next read.
+         */
+        private void processFrames() throws IOException {
+            int start = readBuffer.position();
+            int end = BinaryFrames.completeFramesEnd(readBuffer, maxLineLength);
+            if (end > start) {
+                int frames = BinaryFrames.countFrames(readBuffer, start, end);
+                lineNo += frames;
+                stats.onLines(frames);
+                int limit = readBuffer.limit();
+                readBuffer.limit(end);
+                if (!writeBuffer.hasRemaining()) {
+                    stats.onBytesOut(channel.write(readBuffer));
+                }
+                if (readBuffer.hasRemaining()) {
+                    prepareWrite(readBuffer.remaining());
+                    writeBuffer.put(readBuffer);
+                    writeBuffer.flip();
+                }
+                readBuffer.limit(limit);
+            }
+            readBuffer.compact();
+            if (!readBuffer.hasRemaining() && readBuffer.capacity() < BinaryFrames.HEADER_LENGTH + maxLineLength) {
+                // an incomplete frame larger than the buffer
+                var newBuffer = ByteBuffer.allocate(Math.min(2 * readBuffer.capacity(),
+                        BinaryFrames.HEADER_LENGTH + maxLineLength));
+                newBuffer.put(readBuffer.flip());
+                readBuffer = newBuffer;
+            }
+        }
+
+        private void processInput() throws IOException {
+            while (!isClosing && decoder.decode(readBuffer)) {
+                byte[] line = decoder.lineBytes();
+                int length = decoder.lineLength();
+                if (AsciiLines.equalsAscii(line, 0, length, EXIT_LINE)) {
+                    writeLine("Bye.");
+                    isClosing = true;
+                    return;
+                }
+                if (AsciiLines.equalsAscii(line, 0, length, STATS_LINE)) {
+                    metrics.formatStats().forEach(this::writeLine);
+                    writeLine("");
+                    decoder.clearLine();
+                    continue;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Received line '{}', echoing it back", new String(line, 0, length, CHARSET));
+                }
+                writeReply(line, length);
+                decoder.clearLine();
+            }
+        }
+
+        private void writeReply(byte[] line, int length) {
+            int number = lineNo++;
+            stats.onLine();
+            if (transcriptLog != null) {
+                transcriptLog.record(clientNo, number, line, 0, length);
+            }
+            if (!AsciiLines.toUpperCaseAscii(line, 0, length)) {
+                // slow-path, for lines with non-ASCII characters
+                writeLine(String.format("%d: %s", number, new String(line, 0, length, CHARSET).toUpperCase()));
+                return;
+            }
+            prepareWrite(AsciiLines.MAX_DECIMAL_LENGTH + LINE_NUMBER_SEPARATOR.length
+                    + length + AsciiLines.LINE_SEPARATOR.length);
+            int position = AsciiLines.putDecimal(number, writeBuffer.array(), writeBuffer.position());
+            writeBuffer.position(position);
+            writeBuffer.put(LINE_NUMBER_SEPARATOR);
+            writeBuffer.put(line, 0, length);
+            writeBuffer.put(AsciiLines.LINE_SEPARATOR);
+            writeBuffer.flip();
+        }
+
+        private void writeLine(String s) {
+            byte[] bytes = (s + LINE_SEPARATOR).getBytes(CHARSET);
+            prepareWrite(bytes.length);
+            writeBuffer.put(bytes);
+            writeBuffer.flip();
+        }
+
+        /**
+         * Switches the write buffer to write mode, ensuring it has space for {@code length} more bytes.
+         */
+        private void prepareWrite(int length) {
+            // moves the pending bytes to the start
+            writeBuffer.compact();
+            if (writeBuffer.remaining() < length) {
+                var newBuffer = ByteBuffer.allocate(
+                        Math.max(2 * writeBuffer.capacity(), writeBuffer.position() + length));
+                newBuffer.put(writeBuffer.flip());
+                writeBuffer = newBuffer;
+            }
+        }
+
+        /**
+         * Writes the pending bytes and, if not all of them could be written, stops reading
+         * until the channel becomes writable, so that a slow reader cannot make the write buffer grow.
+         */
+        private void flushAndUpdateInterest() {
+            try {
+                stats.onBytesOut(channel.write(writeBuffer));
+            } catch (IOException e) {
+                logger.warn("Connection ended with IO error: {}", e.getMessage());
+                close(true);
+                return;
+            }
+            if (writeBuffer.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (isClosing) {
+                close(false);
+                return;
+            }
+            if (writeBuffer.capacity() > bufferSize) {
+                // release the memory used by a burst of replies
+                writeBuffer = ByteBuffer.allocate(bufferSize).flip();
+            }
+            writeBuffer.clear().flip();
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void close(boolean isError) {
+            if (!key.isValid()) {
+                return;
+            }
+            key.cancel();
+            closeSilently(channel);
+            metrics.closeConnectionStats(stats);
+            metrics.onEnded(isError);
+            logger.info("client {} connection closed", clientNo);
+        }
+    }
+
+    private static void closeSilently(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // on purpose
+        }
+    }
+}
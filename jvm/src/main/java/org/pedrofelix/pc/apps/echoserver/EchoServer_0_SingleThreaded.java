@@ -1,5 +1,6 @@
 package org.pedrofelix.pc.apps.echoserver;
 
+import org.pedrofelix.pc.utils.AsyncLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,7 @@ import java.net.Socket;
 public class EchoServer_0_SingleThreaded {
 
     private static final Logger logger = LoggerFactory.getLogger(EchoServer_0_SingleThreaded.class);
+    private static final AsyncLogger lineLogger = Utils.newLineLogger(logger);
     private static final int PORT = 8080;
     private static final String ADDRESS = "0.0.0.0";
     private static final String EXIT_LINE = "exit";
@@ -49,7 +51,7 @@ public class EchoServer_0_SingleThreaded {
                     socket.close();
                     return;
                 }
-                logger.info("Received line '{}', echoing it back", line);
+                lineLogger.info("Received line '{}', echoing it back", line);
                 Utils.writeLine(writer, "%d: %s", lineNo++, line.toUpperCase());
             }
         } catch (IOException e) {
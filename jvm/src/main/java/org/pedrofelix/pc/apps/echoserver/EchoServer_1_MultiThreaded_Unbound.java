@@ -1,5 +1,6 @@
 package org.pedrofelix.pc.apps.echoserver;
 
+import org.pedrofelix.pc.utils.AsyncLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +13,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class EchoServer_1_MultiThreaded_Unbound {
 
     private static final Logger logger = LoggerFactory.getLogger(EchoServer_1_MultiThreaded_Unbound.class);
+    private static final AsyncLogger lineLogger = Utils.newLineLogger(logger);
     private static final int PORT = 8080;
     private static final String ADDRESS = "0.0.0.0";
     private static final String EXIT_LINE = "exit";
@@ -50,7 +52,7 @@ public class EchoServer_1_MultiThreaded_Unbound {
                     socket.close();
                     return;
                 }
-                logger.info("Received line '{}', echoing it back", line);
+                lineLogger.info("Received line '{}', echoing it back", line);
                 Utils.writeLine(writer, "%d: %s", lineNo++, line.toUpperCase());
             }
         } catch (IOException e) {
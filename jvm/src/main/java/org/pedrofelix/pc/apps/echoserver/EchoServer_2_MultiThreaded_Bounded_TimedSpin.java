@@ -1,5 +1,7 @@
 package org.pedrofelix.pc.apps.echoserver;
 
+import org.pedrofelix.pc.utils.AsyncLogger;
+import org.pedrofelix.pc.utils.HashedTimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,9 +14,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class EchoServer_2_MultiThreaded_Bounded_TimedSpin {
 
     private static final Logger logger = LoggerFactory.getLogger(EchoServer_2_MultiThreaded_Bounded_TimedSpin.class);
+    private static final AsyncLogger lineLogger = Utils.newLineLogger(logger);
     private static final int PORT = 8080;
     private static final String ADDRESS = "0.0.0.0";
     private static final String EXIT_LINE = "exit";
+    private static final HashedTimingWheel idleTimeoutWheel = Utils.newIdleTimeoutWheel();
 
     public static void main(String[] args) throws IOException {
         new EchoServer_2_MultiThreaded_Bounded_TimedSpin().run();
@@ -40,6 +44,8 @@ public class EchoServer_2_MultiThreaded_Bounded_TimedSpin {
     private void echoLoop(Socket socket) {
         int clientNo = getNewClientNumber();
         int lineNo = 0;
+        // closes the socket if no line is received in time, ending this loop so that the accept loop can continue
+        var idleTimeout = IdleTimeout.start(idleTimeoutWheel, socket, Utils.idleTimeoutInMs());
         try (socket;
              var reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
              var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
@@ -47,17 +53,19 @@ public class EchoServer_2_MultiThreaded_Bounded_TimedSpin {
             while (true) {
 
                 var line = reader.readLine();
+                idleTimeout.onActivity();
                 if (line == null || line.equals(EXIT_LINE)) {
                     Utils.writeLine(writer, "Bye.");
                     socket.close();
                     return;
                 }
-                logger.info("Received line '{}', echoing it back", line);
+                lineLogger.info("Received line '{}', echoing it back", line);
                 Utils.writeLine(writer, "%d: %s", lineNo++, line.toUpperCase());
             }
         } catch (IOException e) {
             logger.warn("Connection ended with IO error: {}", e.getMessage());
         } finally {
+            idleTimeout.cancel();
             decrementRunningEchoLoops();
         }
     }
@@ -0,0 +1,63 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Echo server using non-blocking IO, with one acceptor thread and multiple reactor threads.
+ * Each reactor thread owns a {@link Selector} and handles all the IO for the connections assigned to it,
+ * so the number of threads does not depend on the number of connections.
+ * See {@link EchoReactor}.
+ */
+public class EchoServer_4_NonBlocking_Reactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoServer_4_NonBlocking_Reactor.class);
+    private static final int PORT = 8080;
+    private static final String ADDRESS = "0.0.0.0";
+    private static final int BACKLOG = 1024;
+    private static final int N_OF_REACTORS = Runtime.getRuntime().availableProcessors();
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        new EchoServer_4_NonBlocking_Reactor().run();
+    }
+
+    private final EchoReactor[] reactors = new EchoReactor[N_OF_REACTORS];
+    private final EchoMetrics metrics = new EchoMetrics();
+
+    private void run() throws IOException {
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(ADDRESS, PORT), BACKLOG);
+        logger.info("server socket bound to {}:{}", ADDRESS, PORT);
+        for (int i = 0; i < reactors.length; ++i) {
+            reactors[i] = new EchoReactor(i, BUFFER_SIZE, MAX_LINE_LENGTH, metrics);
+            reactors[i].start();
+        }
+        logger.info("started {} reactors", reactors.length);
+        acceptLoop(serverChannel);
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel) throws IOException {
+        int next = 0;
+        while (true) {
+            var channel = serverChannel.accept();
+            logger.info("client socket accepted, remote address is {}",
+                    channel.socket().getInetAddress().getHostAddress());
+            reactors[next].register(channel, getNewClientNumber());
+            next = (next + 1) % reactors.length;
+        }
+    }
+
+    private final AtomicInteger clientNoCounter = new AtomicInteger(1);
+
+    private int getNewClientNumber() {
+        return clientNoCounter.getAndAdd(1);
+    }
+}
@@ -0,0 +1,110 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.pedrofelix.pc.sketches.SimpleThreadPool;
+import org.pedrofelix.pc.utils.HashedTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Echo server where accepted sockets are handled by a bounded pool of reusable worker threads,
+ * instead of creating a thread per connection.
+ * When all workers are busy and the pending connections queue is full, new connections are
+ * rejected immediately with a "busy" line.
+ * Each connection is handled by a {@link ByteEchoEngine}.
+ *
+ * Usage: EchoServer_5_Pooled_Workers [number of workers] [max pending connections] [keep alive in ms]
+ *                                   [per-line | coalescing]
+ */
+public class EchoServer_5_Pooled_Workers {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoServer_5_Pooled_Workers.class);
+    private static final int PORT = 8080;
+    private static final String ADDRESS = "0.0.0.0";
+    private static final String BUSY_LINE = "Server busy, please try again later.";
+    private static final int MAX_PENDING_REPLY_BYTES = 8 * 1024;
+    private static final long MAX_PENDING_REPLY_TIME_IN_MS = 5;
+    private static final HashedTimingWheel idleTimeoutWheel = Utils.newIdleTimeoutWheel();
+
+    public static void main(String[] args) throws IOException {
+        int nOfWorkers = args.length > 0 ? Integer.parseInt(args[0]) : 2 * Runtime.getRuntime().availableProcessors();
+        int maxPending = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long keepAliveInMs = args.length > 2 ? Long.parseLong(args[2]) : 60_000;
+        var flushPolicy = args.length > 3 && args[3].equals("per-line")
+                ? ByteEchoEngine.FlushPolicy.perLine()
+                : ByteEchoEngine.FlushPolicy.coalescing(MAX_PENDING_REPLY_BYTES, MAX_PENDING_REPLY_TIME_IN_MS);
+        new EchoServer_5_Pooled_Workers(nOfWorkers, maxPending, keepAliveInMs, flushPolicy).run();
+    }
+
+    private final SimpleThreadPool pool;
+    private final ByteEchoEngine.FlushPolicy flushPolicy;
+    private final EchoMetrics metrics = new EchoMetrics();
+
+    public EchoServer_5_Pooled_Workers(int nOfWorkers, int maxPending, long keepAliveInMs,
+                                       ByteEchoEngine.FlushPolicy flushPolicy) {
+        this.pool = new SimpleThreadPool(nOfWorkers, maxPending, keepAliveInMs);
+        this.flushPolicy = flushPolicy;
+        logger.info("using {} workers and {} max pending connections", nOfWorkers, maxPending);
+    }
+
+    private void run() throws IOException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(ADDRESS, PORT));
+        logger.info("server socket bound to {}:{}", ADDRESS, PORT);
+        acceptLoop(serverSocket);
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) throws IOException {
+        while (true) {
+            var socket = serverSocket.accept();
+            logger.info("client socket accepted, remote address is {}", socket.getInetAddress().getHostAddress());
+            metrics.onAccepted();
+            if (!pool.tryExecute(() -> echoLoop(socket))) {
+                metrics.onRejected();
+                reject(socket);
+            }
+        }
+    }
+
+    private void reject(Socket socket) {
+        logger.warn("pending connections queue is full, rejecting connection");
+        try (socket;
+             var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            Utils.writeLine(writer, BUSY_LINE);
+        } catch (IOException e) {
+            logger.warn("Unable to reject connection: {}", e.getMessage());
+        }
+    }
+
+    private void echoLoop(Socket socket) {
+        int clientNo = getNewClientNumber();
+        boolean isError = false;
+        metrics.onStarted();
+        // closes the socket if nothing is received in time, returning the worker to the pool
+        var idleTimeout = IdleTimeout.start(idleTimeoutWheel, socket, Utils.idleTimeoutInMs());
+        try (socket) {
+            new ByteEchoEngine(idleTimeout.reportingActivity(socket.getInputStream()), socket.getOutputStream(),
+                    Charset.defaultCharset(), ByteEchoEngine.DEFAULT_BUFFER_SIZE, ByteEchoEngine.DEFAULT_MAX_LINE_LENGTH,
+                    flushPolicy, metrics)
+                    .run(clientNo);
+        } catch (IOException e) {
+            isError = true;
+            logger.warn("Connection ended with IO error: {}", e.getMessage());
+        } finally {
+            idleTimeout.cancel();
+            metrics.onEnded(isError);
+        }
+    }
+
+    private final AtomicInteger clientNoCounter = new AtomicInteger(1);
+
+    private int getNewClientNumber() {
+        return clientNoCounter.getAndAdd(1);
+    }
+}
@@ -0,0 +1,96 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.pedrofelix.pc.sketches.SimpleThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Echo server with multiple acceptor threads, for high connection rates.
+ * The acceptor threads only accept connections and hand them to a pool of worker threads,
+ * so connection handling, including logging, does not delay the next accept.
+ *
+ * Usage: EchoServer_6_MultiAcceptor [number of acceptors] [backlog] [number of workers] [use SO_REUSEPORT]
+ */
+public class EchoServer_6_MultiAcceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoServer_6_MultiAcceptor.class);
+    private static final int PORT = 8080;
+    private static final String ADDRESS = "0.0.0.0";
+    private static final byte[] BUSY_LINE_BYTES =
+            ("Server busy, please try again later." + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_PENDING = 1024;
+    private static final long KEEP_ALIVE_IN_MS = 60_000;
+
+    public static void main(String[] args) throws IOException {
+        int nOfProcessors = Runtime.getRuntime().availableProcessors();
+        int nOfAcceptors = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, nOfProcessors / 2);
+        int backlog = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int nOfWorkers = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        boolean useReusePort = args.length <= 3 || Boolean.parseBoolean(args[3]);
+        new EchoServer_6_MultiAcceptor(nOfWorkers).run(nOfAcceptors, backlog, useReusePort);
+    }
+
+    private final SimpleThreadPool pool;
+    private final EchoMetrics metrics = new EchoMetrics();
+
+    public EchoServer_6_MultiAcceptor(int nOfWorkers) {
+        this.pool = new SimpleThreadPool(nOfWorkers, MAX_PENDING, KEEP_ALIVE_IN_MS);
+    }
+
+    private void run(int nOfAcceptors, int backlog, boolean useReusePort) throws IOException {
+        var acceptor = new MultiAcceptor(new InetSocketAddress(ADDRESS, PORT), nOfAcceptors, backlog, useReusePort,
+                this::onAccepted);
+        acceptor.start();
+    }
+
+    private void onAccepted(SocketChannel channel) {
+        var socket = channel.socket();
+        metrics.onAccepted();
+        if (!pool.tryExecute(() -> echoLoop(socket))) {
+            metrics.onRejected();
+            reject(channel);
+        }
+    }
+
+    /**
+     * Sends the busy line with a single non-blocking write, since this runs on the acceptor thread.
+     * The line is not sent if it does not fit in the socket buffer, which only happens with a slow client.
+     */
+    private void reject(SocketChannel channel) {
+        try (channel) {
+            channel.configureBlocking(false);
+            channel.write(ByteBuffer.wrap(BUSY_LINE_BYTES));
+        } catch (IOException e) {
+            logger.warn("Unable to reject connection: {}", e.getMessage());
+        }
+    }
+
+    private void echoLoop(Socket socket) {
+        logger.info("client socket accepted, remote address is {}", socket.getInetAddress().getHostAddress());
+        int clientNo = getNewClientNumber();
+        boolean isError = false;
+        metrics.onStarted();
+        try (socket) {
+            new ByteEchoEngine(socket.getInputStream(), socket.getOutputStream(), metrics).run(clientNo);
+        } catch (IOException e) {
+            isError = true;
+            logger.warn("Connection ended with IO error: {}", e.getMessage());
+        } finally {
+            metrics.onEnded(isError);
+        }
+    }
+
+    private final AtomicInteger clientNoCounter = new AtomicInteger(1);
+
+    private int getNewClientNumber() {
+        return clientNoCounter.getAndAdd(1);
+    }
+}
@@ -0,0 +1,114 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.pedrofelix.pc.synchronizers.AdaptiveConcurrencyLimit;
+import org.pedrofelix.pc.utils.AsyncLogger;
+import org.pedrofelix.pc.utils.HashedTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Echo server with admission control based on an {@link AdaptiveConcurrencyLimit},
+ * instead of the fixed number of echo loops used by {@link EchoServer_3_MultiThreaded_Bounded_Semaphore}.
+ * The limit adapts to the per-line latency, and a connection that does not immediately get a permit
+ * is rejected with a "busy" line. The accept loop never waits for a permit, otherwise each rejected
+ * connection would delay the accepts of all the others, making load shedding slow when it is most needed.
+ *
+ * Usage: EchoServer_7_Adaptive_Admission [initial limit] [min limit] [max limit]
+ */
+public class EchoServer_7_Adaptive_Admission {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoServer_7_Adaptive_Admission.class);
+    private static final AsyncLogger lineLogger = Utils.newLineLogger(logger);
+    private static final int PORT = 8080;
+    private static final String ADDRESS = "0.0.0.0";
+    private static final String EXIT_LINE = "exit";
+    private static final HashedTimingWheel idleTimeoutWheel = Utils.newIdleTimeoutWheel();
+    private static final String BUSY_LINE = "Server busy, please try again later.";
+
+    public static void main(String[] args) throws IOException {
+        int initialLimit = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int minLimit = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int maxLimit = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        new EchoServer_7_Adaptive_Admission(new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit)).run();
+    }
+
+    private final AdaptiveConcurrencyLimit limit;
+
+    public EchoServer_7_Adaptive_Admission(AdaptiveConcurrencyLimit limit) {
+        this.limit = limit;
+    }
+
+    private void run() throws IOException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(ADDRESS, PORT));
+        logger.info("server socket bound to {}:{}", ADDRESS, PORT);
+        acceptLoop(serverSocket);
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) throws IOException {
+        while (true) {
+            var socket = serverSocket.accept();
+            logger.info("client socket accepted, remote address is {}, concurrency limit is {}",
+                    socket.getInetAddress().getHostAddress(), limit.getLimit());
+            if (limit.tryAcquire()) {
+                new Thread(() -> echoLoop(socket)).start();
+            } else {
+                reject(socket);
+            }
+        }
+    }
+
+    private void reject(Socket socket) {
+        try (socket;
+             var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            Utils.writeLine(writer, BUSY_LINE);
+        } catch (IOException e) {
+            logger.warn("Unable to reject connection: {}", e.getMessage());
+        }
+    }
+
+    private void echoLoop(Socket socket) {
+        int clientNo = getNewClientNumber();
+        int lineNo = 0;
+        // closes the socket if no line is received in time, ending this loop and releasing its permit
+        var idleTimeout = IdleTimeout.start(idleTimeoutWheel, socket, Utils.idleTimeoutInMs());
+        try (socket;
+             var reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            Utils.writeLine(writer, "Hi! You are client number %s", Integer.toString(clientNo));
+            while (true) {
+
+                var line = reader.readLine();
+                idleTimeout.onActivity();
+                if (line == null || line.equals(EXIT_LINE)) {
+                    Utils.writeLine(writer, "Bye.");
+                    socket.close();
+                    return;
+                }
+                lineLogger.info("Received line '{}', echoing it back", line);
+                // the latency includes neither waiting for the next line, which depends on the client,
+                // nor the logging, which depends on the logging mode
+                long start = System.nanoTime();
+                Utils.writeLine(writer, "%d: %s", lineNo++, line.toUpperCase());
+                limit.onSample(System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            logger.warn("Connection ended with IO error: {}", e.getMessage());
+        } finally {
+            idleTimeout.cancel();
+            limit.release();
+        }
+    }
+
+    private final AtomicInteger clientNoCounter = new AtomicInteger(1);
+
+    private int getNewClientNumber() {
+        return clientNoCounter.getAndAdd(1);
+    }
+}
@@ -0,0 +1,179 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.pedrofelix.pc.apps.loadgen.LatencyHistogram;
+import org.pedrofelix.pc.sketches.SimpleMessageQueue;
+import org.pedrofelix.pc.utils.HashedTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Echo server where the accept thread hands the accepted sockets to a fixed set of long-lived worker threads,
+ * through a bounded {@link SimpleMessageQueue}.
+ * When the queue is full the connection is immediately rejected with a "busy" line,
+ * instead of waiting for a worker.
+ * Each worker takes up to "batch size" sockets from the queue at a time and handles them in sequence,
+ * so batches larger than one only suit short-lived connections.
+ * The time each connection waits between being accepted and being handled by a worker
+ * is reported periodically, together with the {@link EchoMetrics}.
+ *
+ * Usage: EchoServer_8_Queued_Workers [number of workers] [queue capacity] [batch size]
+ */
+public class EchoServer_8_Queued_Workers {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoServer_8_Queued_Workers.class);
+    private static final int PORT = 8080;
+    private static final String ADDRESS = "0.0.0.0";
+    private static final String BUSY_LINE = "Server busy, please try again later.";
+    // only bounds each wait, the workers never end
+    private static final long DEQUEUE_TIMEOUT_IN_MS = 10_000;
+    private static final long METRICS_PERIOD_IN_MS = 10_000;
+    private static final HashedTimingWheel idleTimeoutWheel = Utils.newIdleTimeoutWheel();
+
+    private static class QueuedConnection {
+        public final Socket socket;
+        public final long enqueuedAt = System.nanoTime();
+
+        public QueuedConnection(Socket socket) {
+            this.socket = socket;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int nOfWorkers = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        new EchoServer_8_Queued_Workers(nOfWorkers, capacity, batchSize).run();
+    }
+
+    private final SimpleMessageQueue<QueuedConnection> queue;
+    private final int nOfWorkers;
+    private final int batchSize;
+    private final EchoMetrics metrics = new EchoMetrics();
+    // one histogram per worker, locked only to be read by the metrics reporter
+    private final List<LatencyHistogram> queueWaitHistograms = new ArrayList<>();
+
+    public EchoServer_8_Queued_Workers(int nOfWorkers, int capacity, int batchSize) {
+        this.queue = new SimpleMessageQueue<>(capacity);
+        this.nOfWorkers = nOfWorkers;
+        this.batchSize = batchSize;
+    }
+
+    private void run() throws IOException {
+        for (int i = 0; i < nOfWorkers; ++i) {
+            var histogram = new LatencyHistogram();
+            queueWaitHistograms.add(histogram);
+            new Thread(() -> workerLoop(histogram), "worker-" + i).start();
+        }
+        startMetricsReporting();
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(ADDRESS, PORT));
+        logger.info("server socket bound to {}:{}, with {} workers", ADDRESS, PORT, nOfWorkers);
+        acceptLoop(serverSocket);
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) throws IOException {
+        while (true) {
+            var socket = serverSocket.accept();
+            metrics.onAccepted();
+            if (!queue.tryEnqueue(new QueuedConnection(socket))) {
+                metrics.onRejected();
+                reject(socket);
+            }
+        }
+    }
+
+    private void reject(Socket socket) {
+        try (socket;
+             var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))) {
+            Utils.writeLine(writer, BUSY_LINE);
+        } catch (IOException e) {
+            logger.warn("Unable to reject connection: {}", e.getMessage());
+        }
+    }
+
+    private void workerLoop(LatencyHistogram queueWaitHistogram) {
+        try {
+            while (true) {
+                for (QueuedConnection connection : queue.dequeueBatch(batchSize, DEQUEUE_TIMEOUT_IN_MS)) {
+                    // includes the time spent handling the previous connections of the same batch
+                    long queueWait = System.nanoTime() - connection.enqueuedAt;
+                    synchronized (queueWaitHistogram) {
+                        queueWaitHistogram.record(queueWait);
+                    }
+                    echoLoop(connection.socket);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("worker interrupted, ending");
+        }
+    }
+
+    private void echoLoop(Socket socket) {
+        logger.info("client socket accepted, remote address is {}", socket.getInetAddress().getHostAddress());
+        int clientNo = getNewClientNumber();
+        boolean isError = false;
+        metrics.onStarted();
+        // closes the socket if nothing is received in time, so the worker can take the next queued connection
+        var idleTimeout = IdleTimeout.start(idleTimeoutWheel, socket, Utils.idleTimeoutInMs());
+        try (socket) {
+            new ByteEchoEngine(idleTimeout.reportingActivity(socket.getInputStream()), socket.getOutputStream(),
+                    Charset.defaultCharset(), ByteEchoEngine.DEFAULT_BUFFER_SIZE, ByteEchoEngine.DEFAULT_MAX_LINE_LENGTH,
+                    ByteEchoEngine.FlushPolicy.perLine(), metrics).run(clientNo);
+        } catch (IOException e) {
+            isError = true;
+            logger.warn("Connection ended with IO error: {}", e.getMessage());
+        } finally {
+            idleTimeout.cancel();
+            metrics.onEnded(isError);
+        }
+    }
+
+    private void startMetricsReporting() {
+        var th = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(METRICS_PERIOD_IN_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                var queueWait = new LatencyHistogram();
+                for (LatencyHistogram histogram : queueWaitHistograms) {
+                    synchronized (histogram) {
+                        queueWait.add(histogram);
+                    }
+                }
+                logger.info("{} queued={}", metrics, queue.getCount());
+                logger.info("queue wait (us): count={} mean={} p50={} p99={} max={}",
+                        queueWait.getTotalCount(),
+                        (long) (queueWait.getMean() / 1000),
+                        toMicros(queueWait.getValueAtPercentile(50)),
+                        toMicros(queueWait.getValueAtPercentile(99)),
+                        toMicros(queueWait.getMax()));
+            }
+        }, "metrics-reporter");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private final AtomicInteger clientNoCounter = new AtomicInteger(1);
+
+    private int getNewClientNumber() {
+        return clientNoCounter.getAndAdd(1);
+    }
+}
@@ -0,0 +1,94 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.pedrofelix.pc.utils.HashedTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes a connection when no activity is reported during a given time,
+ * which unblocks a thread waiting on a read from that connection.
+ * Reporting activity is only a volatile write. Instead of rescheduling the timeout on each activity,
+ * the expired timeout checks the time of the last activity and, if needed, is scheduled again for the remaining time.
+ */
+public class IdleTimeout {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdleTimeout.class);
+
+    public static IdleTimeout start(HashedTimingWheel wheel, Closeable connection, long idleTimeoutInMs) {
+        var idleTimeout = new IdleTimeout(wheel, connection, idleTimeoutInMs);
+        idleTimeout.timeout = wheel.schedule(idleTimeout::onExpired, idleTimeoutInMs);
+        return idleTimeout;
+    }
+
+    private final HashedTimingWheel wheel;
+    private final Closeable connection;
+    private final long idleTimeoutNanos;
+    private volatile long lastActivity = System.nanoTime();
+    private volatile HashedTimingWheel.Timeout timeout;
+    private volatile boolean isCancelled = false;
+
+    private IdleTimeout(HashedTimingWheel wheel, Closeable connection, long idleTimeoutInMs) {
+        this.wheel = wheel;
+        this.connection = connection;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutInMs);
+    }
+
+    public void onActivity() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Returns a stream where each read reports activity, for echo loops that do not read the lines themselves,
+     * such as {@link ByteEchoEngine}. Activity is then any received bytes, instead of a complete line.
+     */
+    public InputStream reportingActivity(InputStream inputStream) {
+        return new FilterInputStream(inputStream) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                onActivity();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                onActivity();
+                return read;
+            }
+        };
+    }
+
+    public void cancel() {
+        isCancelled = true;
+        timeout.cancel();
+    }
+
+    // runs on the timing wheel's thread
+    private void onExpired() {
+        if (isCancelled) {
+            return;
+        }
+        long remaining = idleTimeoutNanos - (System.nanoTime() - lastActivity);
+        if (remaining > 0) {
+            timeout = wheel.schedule(this::onExpired, TimeUnit.NANOSECONDS.toMillis(remaining));
+            // cancel may have happened before the new timeout was visible
+            if (isCancelled) {
+                timeout.cancel();
+            }
+            return;
+        }
+        logger.info("closing connection idle for more than {} ms", TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos));
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close idle connection: {}", e.getMessage());
+        }
+    }
+}
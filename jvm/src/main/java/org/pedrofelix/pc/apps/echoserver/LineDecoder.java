@@ -0,0 +1,100 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Incremental line decoder, for use with non-blocking reads where a line can be split across multiple reads.
+ * Bytes are accumulated until a '\n' is found, and an optional '\r' before it is removed.
+ * Not thread-safe, each connection must use its own instance.
+ */
+public class LineDecoder {
+
+    private final int maxLineLength;
+    private byte[] line;
+    private int length = 0;
+    private boolean isLineComplete = false;
+
+    public LineDecoder(int initialCapacity, int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+        this.line = new byte[Math.min(initialCapacity, maxLineLength)];
+    }
+
+    /**
+     * Consumes bytes from {@code buffer} until a line is complete or there are no more bytes available.
+     *
+     * @param buffer the buffer, in read mode, with the bytes to consume.
+     * @return {@code true} if a line is complete, {@code false} if more bytes are needed.
+     * @throws IOException if the line exceeds the maximum line length.
+     */
+    public boolean decode(ByteBuffer buffer) throws IOException {
+        if (isLineComplete) {
+            throw new IllegalStateException("previous line was not taken");
+        }
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                if (length > 0 && line[length - 1] == '\r') {
+                    length -= 1;
+                }
+                isLineComplete = true;
+                return true;
+            }
+            if (length == line.length) {
+                if (length == maxLineLength) {
+                    throw new IOException(String.format("line exceeds maximum length of %d bytes", maxLineLength));
+                }
+                line = Arrays.copyOf(line, Math.min(maxLineLength, 2 * line.length));
+            }
+            line[length++] = b;
+        }
+        return false;
+    }
+
+    /**
+     * Takes the bytes of an incomplete line as a last line, without terminator, e.g., at the end of the stream.
+     *
+     * @return {@code true} if there was an incomplete line, which is then complete.
+     */
+    public boolean finishLine() {
+        if (isLineComplete || length == 0) {
+            return isLineComplete;
+        }
+        isLineComplete = true;
+        return true;
+    }
+
+    /**
+     * Returns the complete line, without the line terminator, and prepares the decoder for the next one.
+     */
+    public String takeLine(Charset charset) {
+        String s = new String(lineBytes(), 0, lineLength(), charset);
+        clearLine();
+        return s;
+    }
+
+    /**
+     * Returns the array holding the complete line, which is only valid until {@link #clearLine()} is called.
+     * The line occupies the first {@link #lineLength()} bytes and may be modified in place.
+     */
+    public byte[] lineBytes() {
+        if (!isLineComplete) {
+            throw new IllegalStateException("line is not complete");
+        }
+        return line;
+    }
+
+    public int lineLength() {
+        return length;
+    }
+
+    /**
+     * Discards the complete line and prepares the decoder for the next one.
+     */
+    public void clearLine() {
+        length = 0;
+        isLineComplete = false;
+    }
+}
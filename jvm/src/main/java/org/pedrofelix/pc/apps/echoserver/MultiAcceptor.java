@@ -0,0 +1,113 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Accepts connections on multiple threads, so that bursts of connection requests drain the
+ * kernel accept queue faster than a single accept loop.
+ * If {@code SO_REUSEPORT} is requested and supported, each acceptor thread has its own listening socket,
+ * bound to the same address, and the kernel spreads the incoming connections between them.
+ * Otherwise, all acceptor threads share the same listening socket.
+ * Accepted connections are handed to a handler, which must not block, since it runs on the acceptor thread.
+ */
+public class MultiAcceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiAcceptor.class);
+    private static final long ACCEPT_FAILURE_BACKOFF_IN_MS = 10;
+    private static final long FAILURE_REPORT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<ServerSocketChannel> channels = new ArrayList<>();
+    private final List<Thread> ths = new ArrayList<>();
+    private final Consumer<SocketChannel> handler;
+    private final LongAdder acceptedCount = new LongAdder();
+
+    public MultiAcceptor(InetSocketAddress address, int nOfAcceptors, int backlog, boolean useReusePort,
+                         Consumer<SocketChannel> handler) throws IOException {
+        this.handler = handler;
+        boolean reusePort = useReusePort && isReusePortSupported();
+        int nOfChannels = reusePort ? nOfAcceptors : 1;
+        for (int i = 0; i < nOfChannels; ++i) {
+            var channel = ServerSocketChannel.open();
+            if (reusePort) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.bind(address, backlog);
+            channels.add(channel);
+        }
+        for (int i = 0; i < nOfAcceptors; ++i) {
+            var channel = channels.get(i % channels.size());
+            ths.add(new Thread(() -> acceptLoop(channel), "acceptor-" + i));
+        }
+        logger.info("{} acceptors bound to {} with backlog {}, using {} listening sockets",
+                nOfAcceptors, address, backlog, channels.size());
+    }
+
+    public static boolean isReusePortSupported() {
+        try (var channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void start() {
+        ths.forEach(Thread::start);
+    }
+
+    public void close() throws IOException {
+        for (var channel : channels) {
+            channel.close();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel) {
+        long lastFailureReport = System.nanoTime() - FAILURE_REPORT_PERIOD_NANOS;
+        long unreportedFailures = 0;
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                logger.info("listening socket closed, ending acceptor");
+                return;
+            } catch (IOException e) {
+                // e.g. too many open files, which must not end the acceptor.
+                // The connection remains in the backlog, so retrying immediately would fail again,
+                // spinning and flooding the log exactly when the server is overloaded
+                unreportedFailures += 1;
+                long now = System.nanoTime();
+                if (now - lastFailureReport >= FAILURE_REPORT_PERIOD_NANOS) {
+                    logger.warn("accept failed {} times, last error: {}", unreportedFailures, e.getMessage());
+                    unreportedFailures = 0;
+                    lastFailureReport = now;
+                }
+                try {
+                    Thread.sleep(ACCEPT_FAILURE_BACKOFF_IN_MS);
+                } catch (InterruptedException ie) {
+                    logger.info("acceptor interrupted, ending acceptor");
+                    return;
+                }
+                continue;
+            }
+            acceptedCount.increment();
+            handler.accept(channel);
+        }
+    }
+}
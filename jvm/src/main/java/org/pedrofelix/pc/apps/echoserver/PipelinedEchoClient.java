@@ -0,0 +1,116 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/******************************************************************************
+ *
+ * Client that pipelines lines to an echo server, i.e., keeps sending lines without waiting for each reply,
+ * and reports the throughput and the number of reads needed to receive the replies.
+ * The number of reads is an approximation of the number of segments sent by the server,
+ * so it shows the effect of flushing once per line versus coalescing the replies.
+ *
+ * Usage: PipelinedEchoClient [number of connections] [lines per connection] [pipelining depth] [port]
+ *
+ */
+public class PipelinedEchoClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedEchoClient.class);
+    private static final String ADDRESS = "127.0.0.1";
+    private static final byte[] LINE = "the quick brown fox jumps over the lazy dog\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        int nOfConnections = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int nOfLines = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 8080;
+
+        var reads = new AtomicLong();
+        List<Thread> ths = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < nOfConnections; ++i) {
+            var th = new Thread(() -> {
+                try {
+                    runConnection(port, nOfLines, depth, reads);
+                } catch (IOException e) {
+                    logger.error("connection ended with IO error: {}", e.getMessage());
+                }
+            });
+            th.start();
+            ths.add(th);
+        }
+        for (Thread th : ths) {
+            th.join();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long totalLines = (long) nOfConnections * nOfLines;
+        logger.info("{} lines in {} ms, {} lines/s, {} reads, {} lines per read",
+                totalLines, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                totalLines * TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+                reads.get(), String.format("%.2f", (double) totalLines / reads.get()));
+    }
+
+    private static void runConnection(int port, int nOfLines, int depth, AtomicLong reads) throws IOException {
+        try (var socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(ADDRESS, port));
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            long myReads = 0;
+
+            // the greeting line
+            skipLines(in, 1);
+            int sent = 0;
+            int received = 0;
+            byte[] batch = new byte[LINE.length * depth];
+            for (int i = 0; i < depth; ++i) {
+                System.arraycopy(LINE, 0, batch, i * LINE.length, LINE.length);
+            }
+            while (received < nOfLines) {
+                // keeps up to depth lines in flight
+                int toSend = Math.min(depth - (sent - received), nOfLines - sent);
+                if (toSend > 0) {
+                    out.write(batch, 0, toSend * LINE.length);
+                    sent += toSend;
+                }
+                int readLen = in.read(buffer);
+                if (readLen == -1) {
+                    throw new IOException("connection closed by the server");
+                }
+                myReads += 1;
+                for (int i = 0; i < readLen; ++i) {
+                    if (buffer[i] == '\n') {
+                        received += 1;
+                    }
+                }
+            }
+            out.write("exit\n".getBytes(StandardCharsets.US_ASCII));
+            reads.addAndGet(myReads);
+        }
+    }
+
+    private static void skipLines(InputStream in, int nOfLines) throws IOException {
+        int skipped = 0;
+        while (skipped < nOfLines) {
+            int b = in.read();
+            if (b == -1) {
+                throw new IOException("connection closed by the server");
+            }
+            if (b == '\n') {
+                skipped += 1;
+            }
+        }
+    }
+}
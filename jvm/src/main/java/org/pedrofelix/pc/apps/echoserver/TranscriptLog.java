@@ -0,0 +1,220 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Append-only transcript of echoed lines, written into memory-mapped segment files.
+ *
+ * Writers do not use locks: each record's space is reserved by atomically incrementing the segment's position,
+ * and the record is then written into the mapped memory. The record length is written last, with release
+ * semantics, so a reader that sees a non-zero length also sees the rest of the record.
+ * When a segment is full, the writer that crosses its end marks it with {@link #END_OF_SEGMENT} and
+ * the writers move to the next segment. Next segments are created, mapped and touched by a background thread
+ * ahead of time, so writers do not wait on file creation or page faults. Full segments are forced to disk
+ * by that same thread, and the last one on {@link #close}.
+ * After closing, records are dropped.
+ *
+ * Record layout, with big-endian integers and padded to a multiple of {@link #ALIGNMENT} bytes:
+ * length (int, including the header), client number (int), line number (int),
+ * timestamp in milliseconds since the epoch (long), line bytes.
+ */
+public class TranscriptLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscriptLog.class);
+
+    static final int LENGTH_OFFSET = 0;
+    static final int CLIENT_NO_OFFSET = 4;
+    static final int LINE_NO_OFFSET = 8;
+    static final int TIMESTAMP_OFFSET = 12;
+    static final int HEADER_LENGTH = 20;
+    static final int ALIGNMENT = 8;
+    // a length of 0 means that the record was not yet written
+    static final int END_OF_SEGMENT = -1;
+    static final VarHandle INT_VIEW = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final String SEGMENT_PREFIX = "transcript-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int PAGE_SIZE = 4096;
+
+    private static class Segment {
+        public final int index;
+        public final MappedByteBuffer buffer;
+        public final AtomicInteger position = new AtomicInteger(0);
+
+        public Segment(int index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ExecutorService preparer = Executors.newSingleThreadExecutor(runnable -> {
+        var th = new Thread(runnable, "transcript-preparer");
+        th.setDaemon(true);
+        return th;
+    });
+    private final LongAdder dropped = new LongAdder();
+    private volatile Segment current;
+    private volatile boolean isDisabled = false;
+    // guarded by this
+    private CompletableFuture<Segment> next;
+    // guarded by this, the last full segment, whose force may not have run before closing
+    private Segment previous;
+
+    public TranscriptLog(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_LENGTH || segmentSize % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("segmentSize must be a multiple of " + ALIGNMENT);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        // does not overwrite the segments of previous runs
+        int firstIndex = lastSegmentIndex(directory) + 1;
+        current = createSegment(firstIndex);
+        next = prepareSegment(firstIndex + 1);
+        logger.info("transcript segments in {}, starting at {}", directory, segmentPath(directory, firstIndex));
+    }
+
+    /**
+     * Records a line. Does not block, except when the next segment is not yet prepared.
+     *
+     * @return {@code false} if the record was dropped, because it does not fit in a segment
+     * or a segment could not be created.
+     */
+    public boolean record(int clientNo, int lineNo, byte[] bytes, int offset, int length) {
+        int recordLength = align(HEADER_LENGTH + length);
+        if (recordLength > segmentSize) {
+            dropped.increment();
+            return false;
+        }
+        while (!isDisabled) {
+            Segment segment = current;
+            int position = segment.position.getAndAdd(recordLength);
+            if (position + recordLength <= segmentSize) {
+                write(segment.buffer, position, clientNo, lineNo, bytes, offset, length);
+                return true;
+            }
+            if (position < segmentSize) {
+                // this writer is the one that crossed the end of the segment
+                INT_VIEW.setRelease(segment.buffer, position + LENGTH_OFFSET, END_OF_SEGMENT);
+            }
+            roll(segment);
+        }
+        dropped.increment();
+        return false;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        // so that writers do not roll into a segment that will not be prepared
+        isDisabled = true;
+        preparer.shutdownNow();
+        if (previous != null) {
+            force(previous);
+        }
+        force(current);
+    }
+
+    public static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static void write(MappedByteBuffer buffer, int position, int clientNo, int lineNo,
+                              byte[] bytes, int offset, int length) {
+        buffer.putInt(position + CLIENT_NO_OFFSET, clientNo);
+        buffer.putInt(position + LINE_NO_OFFSET, lineNo);
+        buffer.putLong(position + TIMESTAMP_OFFSET, System.currentTimeMillis());
+        // absolute bulk puts only exist since Java 16
+        buffer.duplicate().position(position + HEADER_LENGTH).put(bytes, offset, length);
+        INT_VIEW.setRelease(buffer, position + LENGTH_OFFSET, HEADER_LENGTH + length);
+    }
+
+    private synchronized void roll(Segment full) {
+        if (current != full || isDisabled) {
+            // already rolled by another writer
+            return;
+        }
+        try {
+            Segment segment = next.join();
+            current = segment;
+            previous = full;
+            next = prepareSegment(segment.index + 1);
+            // after preparing the next segment, which the writers may be waiting for
+            preparer.execute(() -> force(full));
+        } catch (CompletionException e) {
+            logger.error("Unable to create transcript segment, transcript disabled: {}", e.getCause().getMessage());
+            isDisabled = true;
+        }
+    }
+
+    private static void force(Segment segment) {
+        try {
+            segment.buffer.force();
+        } catch (UncheckedIOException e) {
+            logger.warn("Unable to force transcript segment {}: {}", segment.index, e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Segment> prepareSegment(int index) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                var segment = createSegment(index);
+                // causes the page faults now, instead of on the writers
+                for (int i = 0; i < segmentSize; i += PAGE_SIZE) {
+                    segment.buffer.put(i, (byte) 0);
+                }
+                return segment;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, preparer);
+    }
+
+    private Segment createSegment(int index) throws IOException {
+        try (var channel = FileChannel.open(segmentPath(directory, index),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping remains valid after the channel is closed
+            return new Segment(index, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    private static int lastSegmentIndex(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .mapToInt(name -> Integer.parseInt(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(-1);
+        }
+    }
+
+    static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -0,0 +1,63 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Replays the records of a {@link TranscriptLog} segment, printing one record per line.
+ * Reading stops at the end of the segment or at the first record not yet written,
+ * so a segment still being written can be read up to that point.
+ *
+ * Usage: TranscriptReader segment-file
+ */
+public class TranscriptReader {
+
+    public interface RecordConsumer {
+        void accept(int clientNo, int lineNo, long timestamp, byte[] bytes);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TranscriptReader segment-file");
+            System.exit(1);
+        }
+        var charset = Charset.defaultCharset();
+        long count = readSegment(Path.of(args[0]), (clientNo, lineNo, timestamp, bytes) ->
+                System.out.printf("%s client=%d line=%d %s%n",
+                        Instant.ofEpochMilli(timestamp), clientNo, lineNo, new String(bytes, charset)));
+        System.err.printf("%d records%n", count);
+    }
+
+    /**
+     * Reads the records of a segment, returning their number.
+     */
+    public static long readSegment(Path path, RecordConsumer consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        long count = 0;
+        int position = 0;
+        while (buffer.capacity() - position >= TranscriptLog.HEADER_LENGTH) {
+            int length = (int) TranscriptLog.INT_VIEW.getAcquire(buffer, position + TranscriptLog.LENGTH_OFFSET);
+            if (length == 0 || length == TranscriptLog.END_OF_SEGMENT) {
+                break;
+            }
+            byte[] bytes = new byte[length - TranscriptLog.HEADER_LENGTH];
+            buffer.duplicate().position(position + TranscriptLog.HEADER_LENGTH).get(bytes);
+            consumer.accept(
+                    buffer.getInt(position + TranscriptLog.CLIENT_NO_OFFSET),
+                    buffer.getInt(position + TranscriptLog.LINE_NO_OFFSET),
+                    buffer.getLong(position + TranscriptLog.TIMESTAMP_OFFSET),
+                    bytes);
+            count += 1;
+            position += TranscriptLog.align(length);
+        }
+        return count;
+    }
+}
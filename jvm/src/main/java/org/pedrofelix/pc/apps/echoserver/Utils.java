@@ -1,14 +1,100 @@
 package org.pedrofelix.pc.apps.echoserver;
 
+import org.pedrofelix.pc.utils.AsyncLogger;
+import org.pedrofelix.pc.utils.HashedTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 
 public class Utils {
 
+    private static final Logger logger = LoggerFactory.getLogger(Utils.class);
+
     private Utils() {
         // static class
     }
 
+    // System property selecting how received lines are logged: sync, async, sampled or off
+    public static final String LINE_LOGGING_PROPERTY = "echoserver.lineLogging";
+    private static final int LINE_LOGGING_CAPACITY = 8 * 1024;
+    private static final int LINE_LOGGING_MAX_PER_SECOND = 100;
+
+    /**
+     * Creates the logger for the per-line messages, which are on the hot path of the echo loops.
+     */
+    public static AsyncLogger newLineLogger(Logger logger) {
+        return new AsyncLogger(logger, lineLoggingMode(), LINE_LOGGING_CAPACITY, LINE_LOGGING_MAX_PER_SECOND);
+    }
+
+    // used by static initializers, so an invalid value must not throw
+    private static AsyncLogger.Mode lineLoggingMode() {
+        var value = System.getProperty(LINE_LOGGING_PROPERTY, "sync");
+        try {
+            return AsyncLogger.Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value '{}' for {}, using sync", value, LINE_LOGGING_PROPERTY);
+            return AsyncLogger.Mode.SYNC;
+        }
+    }
+
+    // System property with the time after which a connection without received lines is closed
+    public static final String IDLE_TIMEOUT_PROPERTY = "echoserver.idleTimeoutInMs";
+    private static final long DEFAULT_IDLE_TIMEOUT_IN_MS = 60_000;
+    private static final long IDLE_TIMEOUT_TICK_IN_MS = 100;
+    private static final int IDLE_TIMEOUT_TICKS_PER_WHEEL = 1024;
+
+    public static long idleTimeoutInMs() {
+        return Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_IN_MS);
+    }
+
+    /**
+     * Creates the timing wheel for the idle timeouts, shared by all the connections of a server.
+     */
+    public static HashedTimingWheel newIdleTimeoutWheel() {
+        return new HashedTimingWheel(IDLE_TIMEOUT_TICK_IN_MS, IDLE_TIMEOUT_TICKS_PER_WHEEL);
+    }
+
+    // System property with the directory for the transcript of echoed lines, which is disabled if not defined
+    public static final String TRANSCRIPT_DIRECTORY_PROPERTY = "echoserver.transcriptDirectory";
+    private static final int TRANSCRIPT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static class TranscriptLogHolder {
+        static final TranscriptLog instance = createTranscriptLog();
+
+        static {
+            if (instance != null) {
+                // so the written segments reach the disk when the server is stopped, e.g. with Ctrl+C
+                Runtime.getRuntime().addShutdownHook(new Thread(instance::close, "transcript-close"));
+            }
+        }
+    }
+
+    /**
+     * Returns the transcript log shared by all the connections in the process, or {@code null} if disabled,
+     * including when it could not be created.
+     */
+    public static TranscriptLog transcriptLog() {
+        return TranscriptLogHolder.instance;
+    }
+
+    private static TranscriptLog createTranscriptLog() {
+        var directory = System.getProperty(TRANSCRIPT_DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return new TranscriptLog(Path.of(directory), TRANSCRIPT_SEGMENT_SIZE);
+        } catch (IOException | InvalidPathException e) {
+            // an exception here would fail the initialization of every class using the transcript
+            logger.error("Unable to create transcript log in '{}', transcript disabled: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+
     public static final void writeLine(BufferedWriter writer, String s) throws IOException {
         writer.write(s);
         writer.newLine();
@@ -0,0 +1,78 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.ByteEchoEngine;
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+import org.pedrofelix.pc.apps.echoserver.IdleTimeout;
+import org.pedrofelix.pc.apps.echoserver.Utils;
+import org.pedrofelix.pc.utils.HashedTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Base class for the strategies where each connection is handled by a thread doing blocking IO,
+ * using a {@link ByteEchoEngine}. The strategies only differ on which thread runs {@link #echoLoop}.
+ */
+abstract class BlockingDispatchStrategy implements ConnectionDispatchStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockingDispatchStrategy.class);
+    private static final byte[] BUSY_LINE =
+            ("Server busy, please try again later." + System.lineSeparator()).getBytes(Charset.defaultCharset());
+
+    protected ServerConfig config;
+    protected EchoMetrics metrics;
+    private ByteEchoEngine.FlushPolicy flushPolicy;
+    // null if the idle timeout is disabled
+    private HashedTimingWheel idleTimeoutWheel;
+
+    @Override
+    public void start(ServerConfig config, EchoMetrics metrics) throws IOException {
+        this.config = config;
+        this.metrics = metrics;
+        this.flushPolicy = config.flushPolicy();
+        if (config.idleTimeoutMillis > 0) {
+            this.idleTimeoutWheel = Utils.newIdleTimeoutWheel();
+        }
+    }
+
+    protected void echoLoop(SocketChannel channel, int clientNo) {
+        metrics.onStarted();
+        boolean isError = false;
+        // closes the channel if nothing is received in time, ending the loop and freeing its thread
+        var idleTimeout = idleTimeoutWheel != null
+                ? IdleTimeout.start(idleTimeoutWheel, channel, config.idleTimeoutMillis)
+                : null;
+        try (channel) {
+            var socket = channel.socket();
+            var inputStream = idleTimeout != null
+                    ? idleTimeout.reportingActivity(socket.getInputStream())
+                    : socket.getInputStream();
+            new ByteEchoEngine(inputStream, socket.getOutputStream(), Charset.defaultCharset(),
+                    config.bufferSize, config.maxLineLength, flushPolicy, metrics)
+                    .run(clientNo);
+        } catch (IOException e) {
+            logger.warn("Connection ended with IO error: {}", e.getMessage());
+            isError = true;
+        } finally {
+            if (idleTimeout != null) {
+                idleTimeout.cancel();
+            }
+            metrics.onEnded(isError);
+        }
+    }
+
+    protected void reject(SocketChannel channel) {
+        metrics.onRejected();
+        try (channel) {
+            // runs on the acceptor thread, so a single best-effort write that never blocks
+            channel.configureBlocking(false);
+            channel.write(ByteBuffer.wrap(BUSY_LINE));
+        } catch (IOException e) {
+            logger.warn("Unable to reject connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+import org.pedrofelix.pc.synchronizers.NArySemaphore;
+import org.pedrofelix.pc.synchronizers.NArySemaphoreWithFifo3;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Handles each connection on a new platform thread, with at most {@code permits} connections at a time.
+ * A connection that does not immediately get a permit is rejected,
+ * since waiting for one on the acceptor thread would also delay the accepts of all the other connections.
+ */
+class BoundedSemaphoreStrategy extends BlockingDispatchStrategy {
+
+    static final String NAME = "semaphore";
+
+    private NArySemaphore semaphore;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(ServerConfig config, EchoMetrics metrics) throws IOException {
+        super.start(config, metrics);
+        semaphore = new NArySemaphoreWithFifo3(config.permits);
+    }
+
+    @Override
+    public void dispatch(SocketChannel channel, int clientNo) {
+        if (!tryAcquire()) {
+            reject(channel);
+            return;
+        }
+        new Thread(() -> {
+            try {
+                echoLoop(channel, clientNo);
+            } finally {
+                semaphore.release(1);
+            }
+        }).start();
+    }
+
+    private boolean tryAcquire() {
+        try {
+            // a zero timeout never waits
+            return semaphore.acquire(1, 0);
+        } catch (InterruptedException e) {
+            // re-arm interruption status
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
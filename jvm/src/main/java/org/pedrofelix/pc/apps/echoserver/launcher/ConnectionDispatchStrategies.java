@@ -0,0 +1,41 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
+
+/**
+ * The available {@link ConnectionDispatchStrategy} implementations, by name.
+ */
+public class ConnectionDispatchStrategies {
+
+    private ConnectionDispatchStrategies() {
+        // static class
+    }
+
+    private static final Map<String, Supplier<ConnectionDispatchStrategy>> builtIns = new LinkedHashMap<>();
+
+    static {
+        builtIns.put(SequentialStrategy.NAME, SequentialStrategy::new);
+        builtIns.put(ThreadPerConnectionStrategy.NAME, ThreadPerConnectionStrategy::new);
+        builtIns.put(BoundedSemaphoreStrategy.NAME, BoundedSemaphoreStrategy::new);
+        builtIns.put(PooledStrategy.NAME, PooledStrategy::new);
+        builtIns.put(VirtualThreadStrategy.NAME, VirtualThreadStrategy::new);
+        builtIns.put(ReactorStrategy.NAME, ReactorStrategy::new);
+    }
+
+    public static ConnectionDispatchStrategy create(String name) {
+        var builtIn = builtIns.get(name);
+        if (builtIn != null) {
+            return builtIn.get();
+        }
+        for (ConnectionDispatchStrategy strategy : ServiceLoader.load(ConnectionDispatchStrategy.class)) {
+            if (strategy.getName().equals(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException(
+                String.format("unknown strategy '%s', available are %s", name, builtIns.keySet()));
+    }
+}
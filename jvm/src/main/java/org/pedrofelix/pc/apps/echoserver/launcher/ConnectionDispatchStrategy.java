@@ -0,0 +1,31 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Defines how the connections accepted by {@link EchoServerLauncher} are handled, i.e., the concurrency model.
+ * Implementations are selected by name, see {@link ConnectionDispatchStrategies}.
+ * Additional implementations can be provided via {@link java.util.ServiceLoader}.
+ */
+public interface ConnectionDispatchStrategy {
+
+    /**
+     * The name used to select the strategy in the command line.
+     */
+    String getName();
+
+    /**
+     * Called once, before any connection is dispatched.
+     */
+    void start(ServerConfig config, EchoMetrics metrics) throws IOException;
+
+    /**
+     * Called on the acceptor thread for each accepted connection, which is in blocking mode.
+     * The strategy becomes responsible for closing the channel.
+     * Blocking the acceptor thread delays the next accept, so only the sequential strategy should do it.
+     */
+    void dispatch(SocketChannel channel, int clientNo);
+}
@@ -0,0 +1,131 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/******************************************************************************
+ *
+ * Configurable echo server, where the concurrency model is a {@link ConnectionDispatchStrategy}
+ * selected in the command line, so that the models can be compared on the same traffic
+ * (e.g. using the loadgen package) without separate copies of the accept and echo loops.
+ * All strategies use the same line protocol and update the same {@link EchoMetrics},
+ * which are logged periodically and when the process ends.
+ * The metrics are also returned by the "stats" command line and, if enabled, to any connection to the admin port.
+ *
+ * Usage: EchoServerLauncher [--strategy=sequential|thread-per-connection|semaphore|pooled|virtual|reactor]
+ *                           [--address=0.0.0.0] [--port=8080] [--backlog=1024]
+ *                           [--permits=2*cores]
+ *                           [--workers=2*cores] [--max-pending=64] [--keep-alive-ms=60000]
+ *                           [--reactors=cores] [--buffer-size=4096] [--max-line-length=65536]
+ *                           [--flush=per-line|coalescing] [--max-pending-reply-bytes=8192]
+ *                           [--max-pending-reply-ms=5] [--idle-timeout-ms=60000]
+ *                           [--metrics-period-ms=10000] [--admin-port=0]
+ *
+ */
+public class EchoServerLauncher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EchoServerLauncher.class);
+
+    public static void main(String[] args) throws IOException {
+        var config = ServerConfig.fromArgs(args);
+        new EchoServerLauncher(config, ConnectionDispatchStrategies.create(config.strategy)).run();
+    }
+
+    private final ServerConfig config;
+    private final ConnectionDispatchStrategy strategy;
+    private final EchoMetrics metrics = new EchoMetrics();
+
+    public EchoServerLauncher(ServerConfig config, ConnectionDispatchStrategy strategy) {
+        this.config = config;
+        this.strategy = strategy;
+    }
+
+    public EchoMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void run() throws IOException {
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.address, config.port), config.backlog);
+        logger.info("server socket bound to {}:{}, using the {} strategy",
+                config.address, config.port, strategy.getName());
+        strategy.start(config, metrics);
+        startMetricsReporting();
+        startAdminPort();
+        acceptLoop(serverChannel);
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel) throws IOException {
+        while (true) {
+            var channel = serverChannel.accept();
+            metrics.onAccepted();
+            logger.debug("client socket accepted, remote address is {}",
+                    channel.socket().getInetAddress().getHostAddress());
+            strategy.dispatch(channel, getNewClientNumber());
+        }
+    }
+
+    private void startMetricsReporting() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                logger.info("[{}] final metrics: {}", strategy.getName(), metrics)));
+        if (config.metricsPeriodMillis <= 0) {
+            return;
+        }
+        var th = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(config.metricsPeriodMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                logger.info("[{}] {}", strategy.getName(), metrics);
+            }
+        }, "metrics-reporter");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /**
+     * Each connection to the admin port receives the metrics and is closed.
+     */
+    private void startAdminPort() throws IOException {
+        if (config.adminPort <= 0) {
+            return;
+        }
+        var adminChannel = ServerSocketChannel.open();
+        adminChannel.bind(new InetSocketAddress(config.address, config.adminPort));
+        logger.info("admin socket bound to {}:{}", config.address, config.adminPort);
+        var th = new Thread(() -> {
+            while (true) {
+                try (var channel = adminChannel.accept()) {
+                    var text = String.join(System.lineSeparator(), metrics.formatStats()) + System.lineSeparator();
+                    var buffer = ByteBuffer.wrap(text.getBytes(Charset.defaultCharset()));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } catch (ClosedChannelException e) {
+                    return;
+                } catch (IOException e) {
+                    logger.warn("admin connection ended with IO error: {}", e.getMessage());
+                }
+            }
+        }, "admin");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    private final AtomicInteger clientNoCounter = new AtomicInteger(1);
+
+    private int getNewClientNumber() {
+        return clientNoCounter.getAndAdd(1);
+    }
+}
@@ -0,0 +1,36 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+import org.pedrofelix.pc.sketches.SimpleThreadPool;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Handles the connections on a bounded pool of reusable worker threads,
+ * rejecting connections when the pending queue is full.
+ */
+class PooledStrategy extends BlockingDispatchStrategy {
+
+    static final String NAME = "pooled";
+
+    private SimpleThreadPool pool;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(ServerConfig config, EchoMetrics metrics) throws IOException {
+        super.start(config, metrics);
+        pool = new SimpleThreadPool(config.workers, config.maxPending, config.keepAliveMillis);
+    }
+
+    @Override
+    public void dispatch(SocketChannel channel, int clientNo) {
+        if (!pool.tryExecute(() -> echoLoop(channel, clientNo))) {
+            reject(channel);
+        }
+    }
+}
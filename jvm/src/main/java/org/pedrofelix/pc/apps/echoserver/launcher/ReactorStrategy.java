@@ -0,0 +1,40 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+import org.pedrofelix.pc.apps.echoserver.EchoReactor;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Handles the connections using non-blocking IO on a fixed number of {@link EchoReactor} threads,
+ * assigned in round-robin.
+ */
+class ReactorStrategy implements ConnectionDispatchStrategy {
+
+    static final String NAME = "reactor";
+
+    private EchoReactor[] reactors;
+    private int next = 0;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(ServerConfig config, EchoMetrics metrics) throws IOException {
+        reactors = new EchoReactor[config.reactors];
+        for (int i = 0; i < reactors.length; ++i) {
+            reactors[i] = new EchoReactor(i, config.bufferSize, config.maxLineLength, metrics);
+            reactors[i].start();
+        }
+    }
+
+    @Override
+    public void dispatch(SocketChannel channel, int clientNo) {
+        // only called on the acceptor thread
+        reactors[next].register(channel, clientNo);
+        next = (next + 1) % reactors.length;
+    }
+}
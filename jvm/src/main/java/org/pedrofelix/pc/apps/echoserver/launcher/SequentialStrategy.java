@@ -0,0 +1,21 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import java.nio.channels.SocketChannel;
+
+/**
+ * Handles each connection on the acceptor thread, so only one connection is handled at a time.
+ */
+class SequentialStrategy extends BlockingDispatchStrategy {
+
+    static final String NAME = "sequential";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void dispatch(SocketChannel channel, int clientNo) {
+        echoLoop(channel, clientNo);
+    }
+}
@@ -0,0 +1,83 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.ByteEchoEngine;
+import org.pedrofelix.pc.apps.echoserver.Utils;
+import org.pedrofelix.pc.utils.NamedArgs;
+
+/**
+ * Echo server configuration, created from {@code --name=value} command line arguments.
+ * Each strategy only uses the values that apply to it.
+ */
+public class ServerConfig {
+
+    public String strategy = "pooled";
+    public String address = "0.0.0.0";
+    public int port = 8080;
+    public int backlog = 1024;
+    // bounded semaphore strategy
+    public int permits = 2 * Runtime.getRuntime().availableProcessors();
+    // pooled strategy
+    public int workers = 2 * Runtime.getRuntime().availableProcessors();
+    public int maxPending = 64;
+    public long keepAliveMillis = 60_000;
+    // reactor strategy
+    public int reactors = Runtime.getRuntime().availableProcessors();
+    // all strategies
+    public int bufferSize = ByteEchoEngine.DEFAULT_BUFFER_SIZE;
+    public int maxLineLength = ByteEchoEngine.DEFAULT_MAX_LINE_LENGTH;
+    // blocking strategies: per-line or coalescing
+    public String flush = "coalescing";
+    public int maxPendingReplyBytes = 8 * 1024;
+    public long maxPendingReplyMillis = 5;
+    // blocking strategies: time without received bytes after which a connection is closed (0 to disable)
+    public long idleTimeoutMillis = Utils.idleTimeoutInMs();
+    // period for logging the metrics (0 to disable)
+    public long metricsPeriodMillis = 10_000;
+    // port where connections receive the metrics (0 to disable)
+    public int adminPort = 0;
+
+    public static ServerConfig fromArgs(String[] args) {
+        var values = NamedArgs.parse(args);
+        var config = new ServerConfig();
+        config.strategy = values.stringOrDefault("strategy", config.strategy);
+        config.address = values.stringOrDefault("address", config.address);
+        config.port = values.intOrDefault("port", config.port);
+        config.backlog = values.intOrDefault("backlog", config.backlog);
+        config.permits = values.intOrDefault("permits", config.permits);
+        config.workers = values.intOrDefault("workers", config.workers);
+        config.maxPending = values.intOrDefault("max-pending", config.maxPending);
+        config.keepAliveMillis = values.longOrDefault("keep-alive-ms", config.keepAliveMillis);
+        config.reactors = values.intOrDefault("reactors", config.reactors);
+        config.bufferSize = values.intOrDefault("buffer-size", config.bufferSize);
+        config.maxLineLength = values.intOrDefault("max-line-length", config.maxLineLength);
+        config.flush = values.stringOrDefault("flush", config.flush);
+        config.maxPendingReplyBytes = values.intOrDefault("max-pending-reply-bytes", config.maxPendingReplyBytes);
+        config.maxPendingReplyMillis = values.longOrDefault("max-pending-reply-ms", config.maxPendingReplyMillis);
+        config.idleTimeoutMillis = values.longOrDefault("idle-timeout-ms", config.idleTimeoutMillis);
+        config.metricsPeriodMillis = values.longOrDefault("metrics-period-ms", config.metricsPeriodMillis);
+        config.adminPort = values.intOrDefault("admin-port", config.adminPort);
+        config.validate();
+        return config;
+    }
+
+    public void validate() {
+        if (permits <= 0 || workers <= 0 || reactors <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("permits, workers, reactors and buffer-size must be > 0");
+        }
+        if (maxLineLength < bufferSize) {
+            throw new IllegalArgumentException("max-line-length must be >= buffer-size");
+        }
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("idle-timeout-ms must be >= 0");
+        }
+        if (!flush.equals("per-line") && !flush.equals("coalescing")) {
+            throw new IllegalArgumentException("flush must be per-line or coalescing");
+        }
+    }
+
+    public ByteEchoEngine.FlushPolicy flushPolicy() {
+        return flush.equals("per-line")
+                ? ByteEchoEngine.FlushPolicy.perLine()
+                : ByteEchoEngine.FlushPolicy.coalescing(maxPendingReplyBytes, maxPendingReplyMillis);
+    }
+}
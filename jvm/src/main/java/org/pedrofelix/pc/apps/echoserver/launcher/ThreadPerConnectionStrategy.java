@@ -0,0 +1,21 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import java.nio.channels.SocketChannel;
+
+/**
+ * Handles each connection on a new platform thread, without any bound on the number of threads.
+ */
+class ThreadPerConnectionStrategy extends BlockingDispatchStrategy {
+
+    static final String NAME = "thread-per-connection";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void dispatch(SocketChannel channel, int clientNo) {
+        new Thread(() -> echoLoop(channel, clientNo)).start();
+    }
+}
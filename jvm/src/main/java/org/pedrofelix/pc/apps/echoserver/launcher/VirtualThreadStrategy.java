@@ -0,0 +1,58 @@
+package org.pedrofelix.pc.apps.echoserver.launcher;
+
+import org.pedrofelix.pc.apps.echoserver.EchoMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Handles each connection on a new virtual thread.
+ * Virtual threads only exist on Java 21 and later, while the project targets Java 11,
+ * so {@code Thread.startVirtualThread} is looked up at runtime.
+ * If it is not available, each connection is handled on a new platform thread.
+ */
+class VirtualThreadStrategy extends BlockingDispatchStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadStrategy.class);
+
+    static final String NAME = "virtual";
+
+    private MethodHandle startVirtualThread;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void start(ServerConfig config, EchoMetrics metrics) throws IOException {
+        super.start(config, metrics);
+        try {
+            startVirtualThread = MethodHandles.publicLookup().findStatic(Thread.class, "startVirtualThread",
+                    MethodType.methodType(Thread.class, Runnable.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            logger.warn("virtual threads are not available on Java {}, using platform threads",
+                    System.getProperty("java.version"));
+        }
+    }
+
+    @Override
+    public void dispatch(SocketChannel channel, int clientNo) {
+        Runnable echoLoop = () -> echoLoop(channel, clientNo);
+        if (startVirtualThread == null) {
+            new Thread(echoLoop).start();
+            return;
+        }
+        try {
+            startVirtualThread.invoke(echoLoop);
+        } catch (Throwable e) {
+            logger.warn("Unable to start virtual thread: {}", e.getMessage());
+            reject(channel);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.pedrofelix.pc.apps.http;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *
+ * Asynchronous version of {@link SimpleServletExample}, illustrating:
+ *
+ * - How a request can be kept pending after doGet returns, using request.startAsync(),
+ *   so that the Jetty thread is returned to the pool instead of being blocked during the wait.
+ *
+ * - How the wait is done with a single timer thread shared by all the requests,
+ *   instead of one blocked thread per request.
+ *
+ * - How the response is written without blocking, using a WriteListener,
+ *   which is called by Jetty when the output is ready.
+ *
+ * With the blocking version, the number of requests waiting at the same time is limited by the
+ * maximum size of the thread pool (200 by default), so that concurrent requests above that number
+ * wait in a queue, even if the server is mostly idle.
+ *
+ * Usage: AsyncServletExample [delay in ms]
+ *
+ * Use to perform concurrent requests
+ *
+ *  curl http://localhost:8080/path1 & curl http://localhost:8080/path2
+ *
+ */
+public class AsyncServletExample {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncServletExample.class);
+    private static final int PORT = 8080;
+    private static final long DEFAULT_DELAY_IN_MS = 1000;
+    // time to write the response after the delay, before Jetty considers the request timed out
+    private static final long ASYNC_TIMEOUT_MARGIN_IN_MS = 30_000;
+
+    public static void main(String[] args) throws Exception {
+        long delayInMs = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_DELAY_IN_MS;
+        Server server = new Server(PORT);
+        ServletHandler handler = new ServletHandler();
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "servlet-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TheServlet servlet = new TheServlet(timer, delayInMs);
+
+        ServletHolder holder = new ServletHolder(servlet);
+        // without this, startAsync throws IllegalStateException
+        holder.setAsyncSupported(true);
+        handler.addServletWithMapping(holder, "/*");
+        log.info("registered {} on all paths", servlet);
+
+        server.setHandler(handler);
+        server.start();
+        log.info("server started listening on port {}", PORT);
+
+        log.info("Waiting for server to end");
+        server.join();
+        timer.shutdownNow();
+
+        log.info("main is ending");
+    }
+
+    static class TheServlet extends HttpServlet {
+
+        private final ScheduledExecutorService timer;
+        private final long delayInMs;
+
+        TheServlet(ScheduledExecutorService timer, long delayInMs) {
+            this.timer = timer;
+            this.delayInMs = delayInMs;
+        }
+
+        @Override
+        public void doGet(HttpServletRequest request, HttpServletResponse response) {
+            log.info("doGet request: method='{}', URI='{}'", request.getMethod(), request.getRequestURI());
+
+            // the request and response remain usable after doGet returns, until asyncContext.complete()
+            AsyncContext asyncContext = request.startAsync();
+            // otherwise Jetty's default of 30 seconds would end requests with longer delays before the timer fires
+            asyncContext.setTimeout(delayInMs + ASYNC_TIMEOUT_MARGIN_IN_MS);
+            String requestThreadName = Thread.currentThread().getName();
+            String method = request.getMethod();
+            String requestURI = request.getRequestURI();
+
+            timer.schedule(() -> {
+                String bodyString = String.format(
+                        "Request started on thread '%s' and continued on thread '%s', method='%s', URI='%s'\n",
+                        requestThreadName,
+                        Thread.currentThread().getName(),
+                        method,
+                        requestURI
+                );
+                byte[] bodyBytes = bodyString.getBytes(StandardCharsets.UTF_8);
+                response.setContentType("text/plain; charset=utf-8");
+                response.setContentLength(bodyBytes.length);
+                try {
+                    ServletOutputStream outputStream = response.getOutputStream();
+                    outputStream.setWriteListener(new BodyWriter(asyncContext, outputStream, bodyBytes));
+                } catch (IOException e) {
+                    log.warn("Unable to get the output stream: {}", e.getMessage());
+                    asyncContext.complete();
+                }
+            }, delayInMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the body when the output is ready, i.e., without blocking the calling thread,
+     * and then completes the request.
+     * Jetty calls onWritePossible when the listener is registered and again each time the output
+     * becomes ready after isReady() returned false.
+     */
+    static class BodyWriter implements WriteListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream outputStream;
+        private final byte[] bodyBytes;
+        private boolean isWritten = false;
+
+        BodyWriter(AsyncContext asyncContext, ServletOutputStream outputStream, byte[] bodyBytes) {
+            this.asyncContext = asyncContext;
+            this.outputStream = outputStream;
+            this.bodyBytes = bodyBytes;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            // isReady() returning false means onWritePossible will be called again, so just return
+            while (outputStream.isReady()) {
+                if (isWritten) {
+                    asyncContext.complete();
+                    return;
+                }
+                outputStream.write(bodyBytes);
+                isWritten = true;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.warn("Error writing the response: {}", throwable.getMessage());
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *
+ * Connection rate benchmark for the echo servers.
+ * Each thread repeatedly opens a connection, waits for the greeting line and closes it,
+ * so the server's accept path is the bottleneck.
+ * Besides the sustained connections per second, it reports the increase of the kernel's
+ * ListenOverflows and ListenDrops counters (from /proc/net/netstat, i.e., Linux only) during the run,
+ * which are non-zero when the accept queue overflowed and connection requests were dropped.
+ *
+ * Usage: ConnectionRateBenchmark [--port=8080] [--threads=cores] [--warmup-ms=2000] [--duration-ms=10000]
+ *
+ */
+public class ConnectionRateBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionRateBenchmark.class);
+    private static final String ADDRESS = "127.0.0.1";
+    private static final Path NETSTAT_PATH = Path.of("/proc/net/netstat");
+    private static final int CONNECT_TIMEOUT_IN_MS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadGeneratorConfig.fromArgs(args);
+        long[] countersBefore = readListenCounters();
+        var benchmark = new ConnectionRateBenchmark(config);
+        benchmark.run();
+        long[] countersAfter = readListenCounters();
+        double seconds = config.durationMillis / 1000.0;
+        System.out.printf("{\"port\":%d,\"threads\":%d,\"durationMs\":%d,\"connections\":%d,\"errors\":%d,"
+                        + "\"connectionsPerSecond\":%d,\"listenOverflows\":%d,\"listenDrops\":%d}%n",
+                config.port, config.threads, config.durationMillis, benchmark.completed, benchmark.errors,
+                Math.round(benchmark.completed / seconds),
+                countersAfter[0] - countersBefore[0], countersAfter[1] - countersBefore[1]);
+    }
+
+    private final LoadGeneratorConfig config;
+    private long measureStart;
+    private long end;
+    private long completed = 0;
+    private long errors = 0;
+
+    public ConnectionRateBenchmark(LoadGeneratorConfig config) {
+        this.config = config;
+    }
+
+    public void run() throws InterruptedException {
+        measureStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.warmupMillis);
+        end = measureStart + TimeUnit.MILLISECONDS.toNanos(config.durationMillis);
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> ths = new ArrayList<>();
+        for (int i = 0; i < config.threads; ++i) {
+            var worker = new Worker();
+            var th = new Thread(worker::runLoop, "connrate-" + i);
+            th.start();
+            workers.add(worker);
+            ths.add(th);
+        }
+        for (Thread th : ths) {
+            th.join();
+        }
+        for (Worker worker : workers) {
+            completed += worker.completed;
+            errors += worker.errors;
+        }
+    }
+
+    /**
+     * Returns the ListenOverflows and ListenDrops counters, or zeros if they are not available.
+     */
+    static long[] readListenCounters() {
+        try {
+            var lines = Files.readAllLines(NETSTAT_PATH);
+            // the file has pairs of lines, the first one with the names and the second one with the values
+            for (int i = 0; i + 1 < lines.size(); i += 2) {
+                var names = lines.get(i).split(" ");
+                var values = lines.get(i + 1).split(" ");
+                if (!names[0].equals("TcpExt:")) {
+                    continue;
+                }
+                long[] counters = new long[2];
+                for (int j = 1; j < names.length && j < values.length; ++j) {
+                    if (names[j].equals("ListenOverflows")) {
+                        counters[0] = Long.parseLong(values[j]);
+                    } else if (names[j].equals("ListenDrops")) {
+                        counters[1] = Long.parseLong(values[j]);
+                    }
+                }
+                return counters;
+            }
+        } catch (IOException e) {
+            logger.warn("unable to read {}: {}", NETSTAT_PATH, e.getMessage());
+        }
+        return new long[2];
+    }
+
+    /**
+     * A thread opening and closing connections. All its state is confined to it.
+     */
+    private class Worker {
+
+        private long completed = 0;
+        private long errors = 0;
+
+        void runLoop() {
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= end) {
+                    return;
+                }
+                boolean isMeasuring = now >= measureStart;
+                try (var socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(ADDRESS, config.port), CONNECT_TIMEOUT_IN_MS);
+                    socket.setSoTimeout(CONNECT_TIMEOUT_IN_MS);
+                    readLine(socket.getInputStream());
+                    if (isMeasuring) {
+                        completed += 1;
+                    }
+                } catch (IOException e) {
+                    if (isMeasuring) {
+                        errors += 1;
+                    }
+                }
+            }
+        }
+
+        private void readLine(InputStream in) throws IOException {
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) {
+                    throw new IOException("connection closed before the greeting line");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+/**
+ * Histogram of latency values with log-linear buckets: values are grouped by powers of two
+ * and each power of two is split in {@code 2^SUB_BUCKET_BITS} linear sub-buckets,
+ * so the relative error of any reported value is below {@code 1 / 2^SUB_BUCKET_BITS}.
+ * Recording is O(1) and does not allocate. Not thread-safe, use one instance per thread and {@link #add} them.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int N_OF_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[N_OF_BUCKETS];
+    private long totalCount = 0;
+    private long max = 0;
+    private double sum = 0;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)] += 1;
+        totalCount += 1;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Records a value and corrects for coordinated omission, by also recording the values that would have been
+     * observed by the requests that were not issued while waiting for this one,
+     * given that requests are expected every {@code expectedInterval}.
+     */
+    public void recordCorrected(long value, long expectedInterval) {
+        record(value);
+        if (expectedInterval <= 0) {
+            return;
+        }
+        for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+            record(missing);
+        }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < N_OF_BUCKETS; ++i) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Returns the value at the given percentile, e.g. 99.9, or 0 if there are no recorded values.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long accumulated = 0;
+        for (int i = 0; i < N_OF_BUCKETS; ++i) {
+            accumulated += counts[i];
+            if (accumulated >= target) {
+                return Math.min(max, highestValueAt(i));
+            }
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
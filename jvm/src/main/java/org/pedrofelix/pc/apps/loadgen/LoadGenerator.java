@@ -0,0 +1,362 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import org.pedrofelix.pc.apps.echoserver.BinaryFrames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *
+ * Loopback load generator for the echo servers, so that all of them can be ranked on the same workload.
+ *
+ * - Closed mode: each connection keeps up to pipeline-depth requests in flight.
+ * - Open mode: requests are sent at a fixed total rate, and latency is measured from the intended
+ *   send time, so a stalled server is not hidden by the generator waiting for it (coordinated omission).
+ *   In closed mode, the same correction is applied if expected-interval-us is provided.
+ *
+ * Connections are spread over a few threads, each one with its own {@link Selector},
+ * so thousands of connections do not require thousands of threads.
+ * The result is written to the standard output as a JSON object or as CSV.
+ *
+ * Usage: LoadGenerator [--label=name] [--port=8080] [--mode=closed|open] [--protocol=line|raw|binary]
+ *                      [--format=json|csv] [--connections=16] [--threads=cores] [--line-size=64]
+ *                      [--pipeline-depth=1] [--rate=10000] [--expected-interval-us=0]
+ *                      [--warmup-ms=2000] [--duration-ms=10000]
+ *
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final String ADDRESS = "127.0.0.1";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadGeneratorConfig.fromArgs(args);
+        var result = new LoadGenerator(config).run();
+        if (config.format == LoadGeneratorConfig.OutputFormat.CSV) {
+            System.out.println(result.csvHeader());
+            System.out.println(result.toCsv());
+        } else {
+            System.out.println(result.toJson());
+        }
+    }
+
+    private final LoadGeneratorConfig config;
+    private final byte[] request;
+    private long measureStart;
+    private long end;
+
+    public LoadGenerator(LoadGeneratorConfig config) {
+        this.config = config;
+        if (config.protocol == LoadGeneratorConfig.Protocol.BINARY) {
+            // the request ID is set when the request is sent
+            this.request = new byte[BinaryFrames.HEADER_LENGTH + config.lineSize];
+            ByteBuffer.wrap(request).putInt(config.lineSize);
+            for (int i = BinaryFrames.HEADER_LENGTH; i < request.length; ++i) {
+                request[i] = (byte) ('a' + i % 26);
+            }
+            return;
+        }
+        this.request = new byte[config.lineSize];
+        for (int i = 0; i < request.length - 1; ++i) {
+            request[i] = (byte) ('a' + i % 26);
+        }
+        request[request.length - 1] = '\n';
+    }
+
+    public LoadResult run() throws IOException, InterruptedException {
+        var workers = new Worker[config.threads];
+        for (int i = 0; i < workers.length; ++i) {
+            workers[i] = new Worker();
+        }
+        logger.info("opening {} connections to port {}", config.connections, config.port);
+        long connectErrors = 0;
+        for (int i = 0; i < config.connections; ++i) {
+            try {
+                workers[i % workers.length].connect();
+            } catch (IOException e) {
+                connectErrors += 1;
+            }
+        }
+        if (connectErrors > 0) {
+            logger.warn("{} connections failed", connectErrors);
+        }
+
+        long start = System.nanoTime();
+        measureStart = start + TimeUnit.MILLISECONDS.toNanos(config.warmupMillis);
+        end = measureStart + TimeUnit.MILLISECONDS.toNanos(config.durationMillis);
+        var ths = new ArrayList<Thread>();
+        for (int i = 0; i < workers.length; ++i) {
+            var th = new Thread(workers[i]::runLoop, "loadgen-" + i);
+            th.start();
+            ths.add(th);
+        }
+        for (Thread th : ths) {
+            th.join();
+        }
+
+        var histogram = new LatencyHistogram();
+        long sent = 0;
+        long completed = 0;
+        long errors = connectErrors;
+        for (Worker worker : workers) {
+            histogram.add(worker.histogram);
+            sent += worker.sent;
+            completed += worker.completed;
+            errors += worker.errors;
+        }
+        return new LoadResult(config, sent, completed, errors, histogram);
+    }
+
+    /**
+     * A thread handling a subset of the connections. All its state is confined to it.
+     */
+    private class Worker {
+
+        private final Selector selector;
+        private final List<Connection> connections = new ArrayList<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long sent = 0;
+        private long completed = 0;
+        private long errors = 0;
+
+        Worker() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void connect() throws IOException {
+            var channel = SocketChannel.open(new InetSocketAddress(ADDRESS, config.port));
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            var connection = new Connection(this, channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+
+        void runLoop() {
+            long startTime = System.nanoTime();
+            for (Connection connection : connections) {
+                connection.start(startTime);
+            }
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= end) {
+                        break;
+                    }
+                    long nextDue = end;
+                    for (Connection connection : connections) {
+                        if (!connection.isClosed) {
+                            nextDue = Math.min(nextDue, connection.sendDue(now));
+                        }
+                    }
+                    long waitMillis = TimeUnit.NANOSECONDS.toMillis(nextDue - System.nanoTime());
+                    if (waitMillis > 0) {
+                        selector.select(waitMillis);
+                    } else {
+                        selector.selectNow();
+                    }
+                    now = System.nanoTime();
+                    var selectedKeys = selector.selectedKeys();
+                    for (var key : selectedKeys) {
+                        var connection = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            connection.flush();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable(now);
+                        }
+                    }
+                    selectedKeys.clear();
+                }
+            } catch (IOException e) {
+                logger.error("worker ended with IO error: {}", e.getMessage());
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of a connection, only accessed by the worker that owns it.
+     */
+    private class Connection {
+
+        private final Worker worker;
+        private final SocketChannel channel;
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(request.length * config.pipelineDepth).flip();
+        // send timestamps of the requests in flight, in a circular buffer
+        private long[] timestamps = new long[config.pipelineDepth];
+        private int timestampsHead = 0;
+        private int inFlight = 0;
+        private SelectionKey key;
+        private boolean isAwaitingGreeting = config.protocol != LoadGeneratorConfig.Protocol.RAW;
+        private long receivedRawBytes = 0;
+        private long intervalNanos;
+        private long nextIntendedSend;
+        private boolean isClosed = false;
+
+        Connection(Worker worker, SocketChannel channel) {
+            this.worker = worker;
+            this.channel = channel;
+            if (config.protocol == LoadGeneratorConfig.Protocol.BINARY) {
+                // selects the binary protocol, sent with the first requests
+                writeBuffer.compact().put(BinaryFrames.MAGIC).flip();
+            }
+        }
+
+        void start(long now) {
+            intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) * config.connections / config.rate);
+            // spreads the connections' send times over the interval
+            nextIntendedSend = now + ThreadLocalRandom.current().nextLong(Math.max(1, intervalNanos));
+        }
+
+        /**
+         * Sends the requests that are due and returns the time when the next one will be due.
+         */
+        long sendDue(long now) {
+            if (config.mode == LoadGeneratorConfig.Mode.CLOSED) {
+                while (inFlight < config.pipelineDepth) {
+                    enqueueRequest(now);
+                }
+            } else {
+                while (nextIntendedSend <= now) {
+                    enqueueRequest(nextIntendedSend);
+                    nextIntendedSend += intervalNanos;
+                }
+            }
+            flush();
+            return config.mode == LoadGeneratorConfig.Mode.CLOSED ? end : nextIntendedSend;
+        }
+
+        void onReadable(long now) {
+            var buffer = worker.readBuffer;
+            buffer.clear();
+            int readLen;
+            try {
+                readLen = channel.read(buffer);
+            } catch (IOException e) {
+                fail(e.getMessage());
+                return;
+            }
+            if (readLen == -1) {
+                fail("connection closed by the server");
+                return;
+            }
+            byte[] bytes = buffer.array();
+            int i = 0;
+            while (isAwaitingGreeting && i < readLen) {
+                isAwaitingGreeting = bytes[i++] != '\n';
+            }
+            if (config.protocol != LoadGeneratorConfig.Protocol.LINE) {
+                // the replies have the same size as the requests
+                receivedRawBytes += readLen - i;
+                while (receivedRawBytes >= request.length) {
+                    receivedRawBytes -= request.length;
+                    complete(now);
+                }
+                return;
+            }
+            for (; i < readLen; ++i) {
+                if (bytes[i] == '\n') {
+                    complete(now);
+                }
+            }
+        }
+
+        private void enqueueRequest(long timestamp) {
+            if (inFlight == timestamps.length) {
+                // only in open mode, where the number of requests in flight is not bounded
+                long[] newTimestamps = new long[2 * timestamps.length];
+                for (int i = 0; i < inFlight; ++i) {
+                    newTimestamps[i] = timestamps[(timestampsHead + i) % timestamps.length];
+                }
+                timestamps = newTimestamps;
+                timestampsHead = 0;
+            }
+            timestamps[(timestampsHead + inFlight) % timestamps.length] = timestamp;
+            inFlight += 1;
+            worker.sent += 1;
+
+            writeBuffer.compact();
+            if (writeBuffer.remaining() < request.length) {
+                var newBuffer = ByteBuffer.allocate(2 * writeBuffer.capacity() + request.length);
+                newBuffer.put(writeBuffer.flip());
+                writeBuffer = newBuffer;
+            }
+            writeBuffer.put(request);
+            if (config.protocol == LoadGeneratorConfig.Protocol.BINARY) {
+                writeBuffer.putInt(writeBuffer.position() - request.length + BinaryFrames.REQUEST_ID_OFFSET,
+                        (int) worker.sent);
+            }
+            writeBuffer.flip();
+        }
+
+        void flush() {
+            if (!writeBuffer.hasRemaining()) {
+                return;
+            }
+            try {
+                channel.write(writeBuffer);
+            } catch (IOException e) {
+                fail(e.getMessage());
+                return;
+            }
+            // if not everything was written, the rest is written when the channel becomes writable
+            key.interestOps(writeBuffer.hasRemaining()
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ);
+        }
+
+        private void complete(long now) {
+            if (inFlight == 0) {
+                // reply without a request, e.g. a server message
+                return;
+            }
+            long timestamp = timestamps[timestampsHead];
+            timestampsHead = (timestampsHead + 1) % timestamps.length;
+            inFlight -= 1;
+            if (now < measureStart || now >= end) {
+                return;
+            }
+            worker.completed += 1;
+            if (config.mode == LoadGeneratorConfig.Mode.CLOSED) {
+                worker.histogram.recordCorrected(now - timestamp,
+                        TimeUnit.MICROSECONDS.toNanos(config.expectedIntervalMicros));
+            } else {
+                worker.histogram.record(now - timestamp);
+            }
+        }
+
+        private void fail(String message) {
+            if (!isClosed) {
+                logger.warn("connection failed: {}", message);
+                worker.errors += 1;
+                close();
+            }
+        }
+
+        void close() {
+            isClosed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // on purpose
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import org.pedrofelix.pc.utils.NamedArgs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator configuration, created from {@code --name=value} command line arguments.
+ */
+public class LoadGeneratorConfig {
+
+    public enum Mode {
+        // each connection keeps up to pipelineDepth requests in flight, sending a new one when a reply arrives
+        CLOSED,
+        // requests are sent at a fixed rate, independently of the replies
+        OPEN
+    }
+
+    public enum Protocol {
+        // the echo servers line protocol: greeting line, then one reply line per request line
+        LINE,
+        // raw echo, where the reply is the same bytes as the request
+        RAW,
+        // the echo servers binary frames protocol, with line-size bytes of payload per frame
+        BINARY
+    }
+
+    public enum OutputFormat {
+        JSON,
+        CSV
+    }
+
+    public String label = "unnamed";
+    public int port = 8080;
+    public Mode mode = Mode.CLOSED;
+    public Protocol protocol = Protocol.LINE;
+    public OutputFormat format = OutputFormat.JSON;
+    public int connections = 16;
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public int lineSize = 64;
+    public int pipelineDepth = 1;
+    // total requests per second, for the open mode
+    public long rate = 10_000;
+    // expected interval between requests of a connection, used to correct the closed mode latencies (0 to disable)
+    public long expectedIntervalMicros = 0;
+    public long warmupMillis = 2_000;
+    public long durationMillis = 10_000;
+
+    public static LoadGeneratorConfig fromArgs(String[] args) {
+        var values = NamedArgs.parse(args);
+        var config = new LoadGeneratorConfig();
+        config.label = values.stringOrDefault("label", config.label);
+        config.port = values.intOrDefault("port", config.port);
+        config.mode = values.enumOrDefault("mode", config.mode);
+        config.protocol = values.enumOrDefault("protocol", config.protocol);
+        config.format = values.enumOrDefault("format", config.format);
+        config.connections = values.intOrDefault("connections", config.connections);
+        config.threads = values.intOrDefault("threads", config.threads);
+        config.lineSize = values.intOrDefault("line-size", config.lineSize);
+        config.pipelineDepth = values.intOrDefault("pipeline-depth", config.pipelineDepth);
+        config.rate = values.longOrDefault("rate", config.rate);
+        config.expectedIntervalMicros = values.longOrDefault("expected-interval-us", config.expectedIntervalMicros);
+        config.warmupMillis = values.longOrDefault("warmup-ms", config.warmupMillis);
+        config.durationMillis = values.longOrDefault("duration-ms", config.durationMillis);
+        config.validate();
+        return config;
+    }
+
+    public void validate() {
+        if (connections <= 0 || threads <= 0 || pipelineDepth <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("connections, threads, pipeline-depth and rate must be > 0");
+        }
+        if (mode == Mode.OPEN && rate > TimeUnit.SECONDS.toNanos(1) * connections) {
+            // otherwise the interval between requests of a connection would be zero nanoseconds
+            throw new IllegalArgumentException("rate must be <= 1e9 * connections");
+        }
+        if (lineSize < 2) {
+            throw new IllegalArgumentException("line-size must be >= 2, to include the line terminator");
+        }
+        threads = Math.min(threads, connections);
+    }
+}
@@ -0,0 +1,78 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The outcome of a load generator run, with latencies in microseconds.
+ */
+public class LoadResult {
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    LoadResult(LoadGeneratorConfig config, long sent, long completed, long errors, LatencyHistogram histogram) {
+        double seconds = config.durationMillis / 1000.0;
+        values.put("label", config.label);
+        values.put("mode", config.mode.name().toLowerCase());
+        values.put("protocol", config.protocol.name().toLowerCase());
+        values.put("connections", config.connections);
+        values.put("lineSize", config.lineSize);
+        values.put("pipelineDepth", config.pipelineDepth);
+        values.put("rate", config.mode == LoadGeneratorConfig.Mode.OPEN ? config.rate : 0);
+        values.put("durationMs", config.durationMillis);
+        values.put("coCorrected", config.mode == LoadGeneratorConfig.Mode.OPEN || config.expectedIntervalMicros > 0);
+        values.put("sent", sent);
+        values.put("completed", completed);
+        values.put("errors", errors);
+        values.put("throughput", Math.round(completed / seconds));
+        values.put("meanUs", micros(histogram.getMean()));
+        values.put("p50Us", micros(histogram.getValueAtPercentile(50)));
+        values.put("p90Us", micros(histogram.getValueAtPercentile(90)));
+        values.put("p99Us", micros(histogram.getValueAtPercentile(99)));
+        values.put("p999Us", micros(histogram.getValueAtPercentile(99.9)));
+        values.put("maxUs", micros(histogram.getMax()));
+    }
+
+    public Object get(String name) {
+        return values.get(name);
+    }
+
+    public String toJson() {
+        return values.entrySet().stream()
+                .map(entry -> String.format("\"%s\":%s", entry.getKey(), jsonValue(entry.getValue())))
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+    public String csvHeader() {
+        return String.join(",", values.keySet());
+    }
+
+    public String toCsv() {
+        return values.values().stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static String jsonValue(Object value) {
+        return value instanceof String ? jsonString((String) value) : String.valueOf(value);
+    }
+
+    private static String jsonString(String s) {
+        var builder = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    // rounded to one decimal place
+    private static double micros(double nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+}
@@ -0,0 +1,397 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import org.pedrofelix.pc.utils.NamedArgs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/******************************************************************************
+ *
+ * Scaling benchmark comparing the thread-per-connection and the coroutine echo servers of
+ * the org.pedrofelix.pc.coroutines package, as the number of concurrent connections grows.
+ *
+ * Each server runs in a child JVM, so its memory and threads can be measured in isolation.
+ * The connections are opened in steps, e.g., 100, 1000, 10000, and kept open across steps.
+ * In each step, every connection sends a message and waits for the echo before sending the next one,
+ * all driven by a single selector thread. At the end of each step the benchmark records the throughput,
+ * the p50 and p99 latency, the server's resident memory and thread count (from /proc, i.e., Linux only)
+ * and its used heap (from jcmd).
+ * A server that fails to reach a step, e.g., due to file descriptor or memory limits,
+ * is not measured for the larger steps.
+ *
+ * The results are written to a CSV file, followed by a summary with the first step from which
+ * the coroutine server stays ahead on each metric.
+ * Above 25000 connections, the client sockets are bound to 127.0.0.2, 127.0.0.3, ...,
+ * so the ephemeral ports of a single address are not exhausted. Both processes need a file descriptor
+ * limit above the largest step (see ulimit -n).
+ *
+ * Usage: ServerScalingBenchmark [--servers=threads,coroutines] [--steps=100,1000,5000,10000,20000,50000]
+ *                               [--warmup-ms=2000] [--duration-ms=10000] [--message-size=32]
+ *                               [--buffer-size=4096] [--server-jvm-args=-Xmx2g] [--output=scaling.csv]
+ *
+ */
+public class ServerScalingBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerScalingBenchmark.class);
+    private static final int PORT = 8080;
+    private static final int CONNECTIONS_PER_ADDRESS = 25_000;
+    private static final long SERVER_START_TIMEOUT_IN_MS = 30_000;
+    private static final long DRAIN_TIMEOUT_IN_MS = 5_000;
+    private static final Pattern HEAP_USED = Pattern.compile("used (\\d+)K");
+
+    private static final Map<String, List<String>> SERVER_COMMANDS = Map.of(
+            "threads", List.of("org.pedrofelix.pc.coroutines.ServerUsingThreadsKt", "{bufferSize}"),
+            // shared channel group threads and no connection limit
+            "coroutines", List.of("org.pedrofelix.pc.coroutines.ServerUsingCoroutines",
+                    "{bufferSize}", "64", "true", "1000000", "raw"));
+
+    private static final class StepResult {
+        final String server;
+        final int connections;
+        long completed;
+        long errors;
+        long throughput;
+        double p50Us;
+        double p99Us;
+        long rssMiB;
+        long heapUsedMiB;
+        long threads;
+        boolean isReached = false;
+
+        StepResult(String server, int connections) {
+            this.server = server;
+            this.connections = connections;
+        }
+
+        String toCsv() {
+            return String.format("%s,%d,%d,%.1f,%.1f,%d,%d,%d,%d",
+                    server, connections, throughput, p50Us, p99Us, rssMiB, heapUsedMiB, threads, errors);
+        }
+    }
+
+    private static final String CSV_HEADER = "server,connections,throughput,p50Us,p99Us,rssMiB,heapUsedMiB,threads,errors";
+
+    public static void main(String[] args) throws Exception {
+        var values = NamedArgs.parse(args);
+        var servers = values.stringOrDefault("servers", "threads,coroutines").split(",");
+        int[] steps = Arrays.stream(values.stringOrDefault("steps", "100,1000,5000,10000,20000,50000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        var benchmark = new ServerScalingBenchmark(
+                values.longOrDefault("warmup-ms", 2000),
+                values.longOrDefault("duration-ms", 10000),
+                values.intOrDefault("message-size", 32),
+                values.intOrDefault("buffer-size", 4096),
+                values.stringOrDefault("server-jvm-args", "-Xmx2g"));
+        var output = Path.of(values.stringOrDefault("output", "scaling.csv"));
+
+        Map<String, List<StepResult>> results = new LinkedHashMap<>();
+        for (String server : servers) {
+            if (!SERVER_COMMANDS.containsKey(server)) {
+                throw new IllegalArgumentException(String.format("unknown server '%s', expected one of %s",
+                        server, SERVER_COMMANDS.keySet()));
+            }
+            results.put(server, benchmark.runServer(server, steps));
+        }
+
+        try (var writer = new PrintWriter(Files.newBufferedWriter(output))) {
+            writer.println(CSV_HEADER);
+            results.values().forEach(list -> list.forEach(result -> writer.println(result.toCsv())));
+        }
+        System.out.println(CSV_HEADER);
+        results.values().forEach(list -> list.forEach(result -> System.out.println(result.toCsv())));
+        System.out.printf("results written to %s%n", output);
+        printSummary(results.get("threads"), results.get("coroutines"));
+    }
+
+    private final long warmupMillis;
+    private final long durationMillis;
+    private final int messageSize;
+    private final int bufferSize;
+    private final String serverJvmArgs;
+
+    public ServerScalingBenchmark(long warmupMillis, long durationMillis, int messageSize, int bufferSize,
+                                  String serverJvmArgs) {
+        this.warmupMillis = warmupMillis;
+        this.durationMillis = durationMillis;
+        this.messageSize = messageSize;
+        this.bufferSize = bufferSize;
+        this.serverJvmArgs = serverJvmArgs;
+    }
+
+    private List<StepResult> runServer(String server, int[] steps) throws IOException, InterruptedException {
+        List<StepResult> results = new ArrayList<>();
+        Process process = startServer(server);
+        List<Connection> connections = new ArrayList<>();
+        try (var selector = Selector.open()) {
+            for (int step : steps) {
+                var result = new StepResult(server, step);
+                results.add(result);
+                logger.info("[{}] opening connections up to {}", server, step);
+                if (!openConnections(connections, step, selector, result) || !process.isAlive()) {
+                    logger.warn("[{}] unable to reach {} connections, skipping the larger steps", server, step);
+                    break;
+                }
+                result.isReached = true;
+                runLoad(connections, selector, result);
+                sampleServer(process.pid(), result);
+                logger.info("[{}] {}", server, result.toCsv());
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.channel.close();
+            }
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+        return results;
+    }
+
+    private Process startServer(String server) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (!serverJvmArgs.isBlank()) {
+            command.addAll(Arrays.asList(serverJvmArgs.trim().split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        for (String arg : SERVER_COMMANDS.get(server)) {
+            command.add(arg.replace("{bufferSize}", Integer.toString(bufferSize)));
+        }
+        var log = Path.of(String.format("scaling-%s.log", server));
+        var process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        logger.info("[{}] started server process {}, output in {}", server, process.pid(), log);
+        long deadline = System.currentTimeMillis() + SERVER_START_TIMEOUT_IN_MS;
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            try (var socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", PORT), 1000);
+                return process;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        process.destroyForcibly();
+        throw new IOException(String.format("server '%s' did not start, see %s", server, log));
+    }
+
+    /**
+     * A client connection, with a single message in flight at a time.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer output = ByteBuffer.allocate(messageSize);
+        final ByteBuffer input = ByteBuffer.allocate(messageSize);
+        long sentAt;
+        boolean isInFlight = false;
+        boolean isBroken = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void send() throws IOException {
+            output.clear();
+            sentAt = System.nanoTime();
+            channel.write(output);
+            // a small message always fits in the socket's send buffer, since there is one message in flight
+            if (output.hasRemaining()) {
+                throw new IOException("partial write");
+            }
+            isInFlight = true;
+        }
+    }
+
+    private boolean openConnections(List<Connection> connections, int target, Selector selector, StepResult result) {
+        while (connections.size() < target) {
+            int index = connections.size();
+            try {
+                var channel = SocketChannel.open();
+                try {
+                    channel.bind(new InetSocketAddress("127.0.0." + (1 + index / CONNECTIONS_PER_ADDRESS), 0));
+                    channel.connect(new InetSocketAddress("127.0.0.1", PORT));
+                    channel.configureBlocking(false);
+                    var connection = new Connection(channel);
+                    channel.register(selector, SelectionKey.OP_READ, connection);
+                    connections.add(connection);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+            } catch (IOException e) {
+                logger.warn("unable to open connection {}: {}", index + 1, e.getMessage());
+                result.errors += 1;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void runLoad(List<Connection> connections, Selector selector, StepResult result) throws IOException {
+        var histogram = new LatencyHistogram();
+        long measureStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        int inFlight = 0;
+        for (Connection connection : connections) {
+            try {
+                connection.send();
+                inFlight += 1;
+            } catch (IOException e) {
+                result.errors += 1;
+                connection.isBroken = true;
+                // also cancels its key, so it is not selected again
+                closeSilently(connection.channel);
+            }
+        }
+        long drainDeadline = end + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_IN_MS);
+        while (inFlight > 0 && System.nanoTime() < drainDeadline) {
+            selector.select(100);
+            long now = System.nanoTime();
+            for (SelectionKey key : selector.selectedKeys()) {
+                var connection = (Connection) key.attachment();
+                try {
+                    if (connection.channel.read(connection.input) == -1) {
+                        throw new IOException("connection closed by the server");
+                    }
+                    if (connection.input.hasRemaining()) {
+                        continue;
+                    }
+                    connection.input.clear();
+                    connection.isInFlight = false;
+                    inFlight -= 1;
+                    if (connection.sentAt >= measureStart && now < end) {
+                        histogram.record(now - connection.sentAt);
+                    }
+                    if (now < end) {
+                        connection.send();
+                        inFlight += 1;
+                    }
+                } catch (IOException e) {
+                    result.errors += 1;
+                    connection.isBroken = true;
+                    // otherwise a closed connection stays readable, and is selected and counted again on each select
+                    key.cancel();
+                    closeSilently(connection.channel);
+                    if (connection.isInFlight) {
+                        connection.isInFlight = false;
+                        inFlight -= 1;
+                    }
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        // a late echo would complete a request of the next step and skew its latencies,
+        // so the connections still waiting for one are counted as errors and replaced by new ones
+        connections.removeIf(connection -> {
+            if (connection.isInFlight) {
+                result.errors += 1;
+            } else if (!connection.isBroken) {
+                return false;
+            }
+            closeSilently(connection.channel);
+            return true;
+        });
+        result.completed = histogram.getTotalCount();
+        result.throughput = Math.round(result.completed / (durationMillis / 1000.0));
+        result.p50Us = histogram.getValueAtPercentile(50) / 1000.0;
+        result.p99Us = histogram.getValueAtPercentile(99) / 1000.0;
+    }
+
+    private static void closeSilently(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // on purpose
+        }
+    }
+
+    private static void sampleServer(long pid, StepResult result) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    result.rssMiB = Long.parseLong(line.replaceAll("\\D", "")) / 1024;
+                } else if (line.startsWith("Threads:")) {
+                    result.threads = Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("unable to read the status of process {}: {}", pid, e.getMessage());
+        }
+        try {
+            var jcmd = Path.of(System.getProperty("java.home"), "bin", "jcmd").toString();
+            var process = new ProcessBuilder(jcmd, Long.toString(pid), "GC.heap_info")
+                    .redirectErrorStream(true).start();
+            var output = new String(process.getInputStream().readAllBytes());
+            process.waitFor();
+            var matcher = HEAP_USED.matcher(output);
+            if (matcher.find()) {
+                result.heapUsedMiB = Long.parseLong(matcher.group(1)) / 1024;
+            }
+        } catch (IOException e) {
+            logger.warn("unable to get the heap usage of process {}: {}", pid, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints, for each metric, the first step from which the coroutine server is better on all the larger steps
+     * measured for both servers.
+     */
+    private static void printSummary(List<StepResult> threads, List<StepResult> coroutines) {
+        if (threads == null || coroutines == null) {
+            return;
+        }
+        for (StepResult result : List.of(threads.get(threads.size() - 1), coroutines.get(coroutines.size() - 1))) {
+            if (!result.isReached) {
+                System.out.printf("the %s server could not reach %d connections%n", result.server, result.connections);
+            }
+        }
+        int n = (int) Math.min(threads.stream().filter(r -> r.isReached).count(),
+                coroutines.stream().filter(r -> r.isReached).count());
+        if (n == 0) {
+            return;
+        }
+        System.out.println("summary, first step from which coroutines stay ahead:");
+        printCrossover("throughput", threads, coroutines, n, (t, c) -> c.throughput > t.throughput);
+        printCrossover("p99 latency", threads, coroutines, n, (t, c) -> c.p99Us < t.p99Us);
+        printCrossover("resident memory", threads, coroutines, n, (t, c) -> c.rssMiB < t.rssMiB);
+    }
+
+    private interface Comparison {
+        boolean isCoroutinesBetter(StepResult threads, StepResult coroutines);
+    }
+
+    private static void printCrossover(String metric, List<StepResult> threads, List<StepResult> coroutines, int n,
+                                       Comparison comparison) {
+        int first = n;
+        while (first > 0 && comparison.isCoroutinesBetter(threads.get(first - 1), coroutines.get(first - 1))) {
+            first -= 1;
+        }
+        if (first == n) {
+            System.out.printf("  %s: never, up to %d connections%n", metric, threads.get(n - 1).connections);
+        } else {
+            System.out.printf("  %s: from %d connections%n", metric, threads.get(first).connections);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.pedrofelix.pc.benchmarks;
+
+import org.pedrofelix.pc.synchronizers.CombiningTreeBarrier;
+import org.pedrofelix.pc.synchronizers.StripedCountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *
+ * Compares the phase throughput of {@link CombiningTreeBarrier} against the JDK's
+ * {@link CyclicBarrier} and {@link Phaser}, and the count down throughput of
+ * {@link StripedCountDownLatch} against the JDK's {@link CountDownLatch}.
+ *
+ * Usage: BarrierBenchmark [number of threads] [number of phases]
+ *
+ */
+public class BarrierBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarrierBenchmark.class);
+    private static final long TIMEOUT_IN_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int N_OF_RUNS = 5;
+
+    @FunctionalInterface
+    private interface Party {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int nOfThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int nOfPhases = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        logger.info("threads={}, phases={}, processors={}",
+                nOfThreads, nOfPhases, Runtime.getRuntime().availableProcessors());
+
+        for (int run = 0; run < N_OF_RUNS; ++run) {
+            var treeBarrier = new CombiningTreeBarrier(nOfThreads);
+            report("CombiningTreeBarrier", nOfPhases, runParties(nOfThreads, () -> {
+                for (int i = 0; i < nOfPhases; ++i) {
+                    treeBarrier.await(TIMEOUT_IN_MS);
+                }
+            }));
+
+            var cyclicBarrier = new CyclicBarrier(nOfThreads);
+            report("CyclicBarrier", nOfPhases, runParties(nOfThreads, () -> {
+                for (int i = 0; i < nOfPhases; ++i) {
+                    cyclicBarrier.await(TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+                }
+            }));
+
+            var phaser = new Phaser(nOfThreads);
+            report("Phaser", nOfPhases, runParties(nOfThreads, () -> {
+                for (int i = 0; i < nOfPhases; ++i) {
+                    phaser.arriveAndAwaitAdvance();
+                }
+            }));
+
+            var stripedLatch = new StripedCountDownLatch(nOfThreads * nOfPhases);
+            report("StripedCountDownLatch", nOfPhases, runParties(nOfThreads, () -> {
+                for (int i = 0; i < nOfPhases; ++i) {
+                    stripedLatch.countDown();
+                }
+                stripedLatch.await(TIMEOUT_IN_MS);
+            }));
+
+            var latch = new CountDownLatch(nOfThreads * nOfPhases);
+            report("CountDownLatch", nOfPhases, runParties(nOfThreads, () -> {
+                for (int i = 0; i < nOfPhases; ++i) {
+                    latch.countDown();
+                }
+                latch.await(TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+            }));
+        }
+    }
+
+    private static long runParties(int nOfThreads, Party party) throws InterruptedException {
+        List<Thread> ths = new ArrayList<>(nOfThreads);
+        for (int i = 0; i < nOfThreads; ++i) {
+            ths.add(new Thread(() -> {
+                try {
+                    party.run();
+                } catch (Exception e) {
+                    logger.error("party ended with exception", e);
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        ths.forEach(Thread::start);
+        for (Thread th : ths) {
+            th.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, int nOfPhases, long elapsedNanos) {
+        logger.info("{}: {} ms total, {} ns per phase",
+                name, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), elapsedNanos / nOfPhases);
+    }
+}
@@ -0,0 +1,52 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.CoroutineDispatcher
+import java.io.Closeable
+import java.nio.channels.AsynchronousChannelGroup
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * Coroutine dispatcher whose threads also run the completion handlers of the channels in [channelGroup].
+ *
+ * With separate thread pools, each I/O completion runs on a channel group thread and the resumed coroutine
+ * is then dispatched to a dispatcher thread, i.e., a thread hop per read or write.
+ * Here, a coroutine resumed on one of the pool threads continues on that thread, without being dispatched.
+ * In addition, NIO2 invokes the completion handler directly when an operation started on a group thread
+ * completes immediately, e.g., a write with space in the socket buffer, so the coroutine does not even suspend.
+ */
+class ChannelGroupDispatcher(nThreads: Int = Runtime.getRuntime().availableProcessors()) :
+    CoroutineDispatcher(), Closeable {
+
+    private val threadCounter = AtomicInteger(0)
+    private val isPoolThread = ThreadLocal.withInitial { false }
+
+    private val executor: ExecutorService = Executors.newFixedThreadPool(nThreads) { runnable ->
+        Thread({
+            isPoolThread.set(true)
+            runnable.run()
+        }, "io-dispatcher-${threadCounter.incrementAndGet()}")
+    }
+
+    val channelGroup: AsynchronousChannelGroup = AsynchronousChannelGroup.withThreadPool(executor)
+
+    // resuming in place is safe because all the pool threads are equivalent
+    override fun isDispatchNeeded(context: CoroutineContext): Boolean = !isPoolThread.get()
+
+    override fun dispatch(context: CoroutineContext, block: Runnable) {
+        executor.execute(block)
+    }
+
+    /**
+     * Closes the channels in the group and terminates the pool threads.
+     */
+    override fun close() {
+        channelGroup.shutdownNow()
+        channelGroup.awaitTermination(10, TimeUnit.SECONDS)
+    }
+
+    override fun toString() = "ChannelGroupDispatcher"
+}
@@ -0,0 +1,103 @@
+package org.pedrofelix.pc.coroutines
+
+import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.lang.ref.Cleaner
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Pool of direct byte buffers with [bufferSize] bytes each.
+ * Buffers are sliced from slabs, i.e., larger direct buffers with [buffersPerSlab] buffers each,
+ * allocated when the pool is empty and never freed.
+ * Using direct buffers avoids the copy through a temporary direct buffer done by NIO on each I/O
+ * with a heap buffer.
+ *
+ * A [PooledBuffer] must be closed to return its buffer to the pool.
+ * A pooled buffer that becomes unreachable without being closed is reported as a leak.
+ * Its buffer is not returned to the pool, because the [ByteBuffer] itself may still be in use,
+ * e.g. by code that kept [PooledBuffer.buffer] and dropped the [PooledBuffer].
+ */
+class DirectBufferPool(val bufferSize: Int, private val buffersPerSlab: Int) {
+
+    init {
+        require(bufferSize > 0 && buffersPerSlab > 0) { "bufferSize and buffersPerSlab must be positive" }
+        require(bufferSize.toLong() * buffersPerSlab <= Int.MAX_VALUE) { "slab size must fit in an Int" }
+    }
+
+    private val free = ConcurrentLinkedQueue<ByteBuffer>()
+    private val slabs = AtomicInteger(0)
+    private val outstanding = AtomicInteger(0)
+    private val leaked = AtomicInteger(0)
+
+    val slabCount: Int
+        get() = slabs.get()
+
+    val outstandingCount: Int
+        get() = outstanding.get()
+
+    val leakedCount: Int
+        get() = leaked.get()
+
+    fun acquire(): PooledBuffer {
+        val buffer = free.poll() ?: allocateSlab()
+        buffer.clear()
+        outstanding.incrementAndGet()
+        return PooledBuffer(this, buffer)
+    }
+
+    // more than one slab may be allocated when many threads find the pool empty at the same time,
+    // the extra buffers just stay in the pool
+    private fun allocateSlab(): ByteBuffer {
+        val slab = ByteBuffer.allocateDirect(bufferSize * buffersPerSlab)
+        for (i in 1 until buffersPerSlab) {
+            free.add(sliceOf(slab, i))
+        }
+        logger.info("allocated slab {} with {} buffers of {} bytes", slabs.incrementAndGet(), buffersPerSlab, bufferSize)
+        return sliceOf(slab, 0)
+    }
+
+    private fun sliceOf(slab: ByteBuffer, index: Int): ByteBuffer =
+        slab.duplicate().limit((index + 1) * bufferSize).position(index * bufferSize).slice()
+
+    private fun release(buffer: ByteBuffer, isLeak: Boolean) {
+        outstanding.decrementAndGet()
+        if (isLeak) {
+            // reusing it could hand the same memory to two users
+            val leaks = leaked.incrementAndGet()
+            logger.warn("pooled buffer was not closed before becoming unreachable, {} leaks so far", leaks)
+            return
+        }
+        free.add(buffer)
+    }
+
+    // does not reference the PooledBuffer, otherwise it would never become unreachable
+    private class Release(private val pool: DirectBufferPool, private val buffer: ByteBuffer) : Runnable {
+        @Volatile
+        var isClosed = false
+
+        override fun run() {
+            pool.release(buffer, !isClosed)
+        }
+    }
+
+    /**
+     * A buffer acquired from a [DirectBufferPool], which must not be used after [close].
+     */
+    class PooledBuffer internal constructor(pool: DirectBufferPool, val buffer: ByteBuffer) : Closeable {
+        private val release = Release(pool, buffer)
+        private val cleanable = cleaner.register(this, release)
+
+        // closing more than once has no effect, because a Cleanable runs its action at most once
+        override fun close() {
+            release.isClosed = true
+            cleanable.clean()
+        }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(DirectBufferPool::class.java)
+        private val cleaner = Cleaner.create()
+    }
+}
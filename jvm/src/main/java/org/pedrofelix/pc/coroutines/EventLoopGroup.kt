@@ -0,0 +1,94 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.ExecutorCoroutineDispatcher
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.asCoroutineDispatcher
+import java.io.Closeable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Group of event loops, by default one per core, each one a single-threaded dispatcher.
+ * A connection is assigned to a loop when accepted and its coroutine runs only on that loop's thread,
+ * so the per-connection state is confined to a thread and does not need synchronization.
+ * The loops do not share connections nor steal work from each other, i.e., shared-nothing.
+ */
+class EventLoopGroup(
+    nLoops: Int = Runtime.getRuntime().availableProcessors(),
+    val balancing: Balancing = Balancing.LEAST_LOADED
+) : Closeable {
+
+    enum class Balancing {
+        ROUND_ROBIN,
+        // the loop with fewer connections, which adapts to connections with different durations
+        LEAST_LOADED
+    }
+
+    init {
+        require(nLoops > 0) { "nLoops must be positive" }
+    }
+
+    val loops: List<EventLoop> = List(nLoops) { EventLoop(it) }
+
+    private val nextIndex = AtomicInteger(0)
+
+    /**
+     * Selects the loop for a new connection.
+     * With [Balancing.LEAST_LOADED], ties are broken in round-robin order,
+     * so that idle loops are not always selected in the same order.
+     */
+    fun next(): EventLoop {
+        val start = Math.floorMod(nextIndex.getAndIncrement(), loops.size)
+        if (balancing == Balancing.ROUND_ROBIN) {
+            return loops[start]
+        }
+        var selected = loops[start]
+        for (i in 1 until loops.size) {
+            val loop = loops[(start + i) % loops.size]
+            if (loop.connectionCount < selected.connectionCount) {
+                selected = loop
+            }
+        }
+        return selected
+    }
+
+    /**
+     * Terminates the loop threads, without waiting for the connections running on them.
+     */
+    override fun close() {
+        loops.forEach { it.close() }
+    }
+}
+
+/**
+ * Single-threaded event loop of an [EventLoopGroup].
+ */
+class EventLoop internal constructor(val index: Int) : Closeable {
+
+    val dispatcher: ExecutorCoroutineDispatcher = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "event-loop-$index")
+    }.asCoroutineDispatcher()
+
+    private val connections = AtomicInteger(0)
+
+    /**
+     * Connections running on this loop, including the ones whose coroutine has not yet started.
+     */
+    val connectionCount: Int
+        get() = connections.get()
+
+    /**
+     * Counts [job] as a connection of this loop until it completes.
+     * Must be called by the acceptor before selecting the next loop, so that the count is up to date.
+     */
+    fun register(job: Job) {
+        connections.incrementAndGet()
+        job.invokeOnCompletion { connections.decrementAndGet() }
+    }
+
+    override fun close() {
+        dispatcher.close()
+    }
+
+    override fun toString() = "event-loop-$index"
+}
@@ -0,0 +1,175 @@
+package org.pedrofelix.pc.coroutines
+
+import org.pedrofelix.pc.apps.echoserver.AsciiLines
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.charset.Charset
+
+/**
+ * Incremental line decoder over a [ByteBuffer], for lines that can be split across multiple reads.
+ * Lines are not copied: [nextLine] returns the bounds of the line inside the buffer,
+ * which remain valid until the buffer is compacted.
+ * The bytes of an incomplete line are only scanned once, even if they stay in the buffer for many reads.
+ * Not thread-safe, each connection must use its own instance.
+ */
+class ByteBufferLineDecoder(private val maxLineLength: Int) {
+
+    // bytes of the incomplete line, after the buffer position, already known not to contain a '\n'
+    private var scannedLength = 0
+
+    /**
+     * Start index of the last line found by [nextLine].
+     */
+    var lineStart = 0
+        private set
+
+    /**
+     * End index of the last line found by [nextLine], excluding the line terminator.
+     */
+    var lineEnd = 0
+        private set
+
+    val lineLength: Int
+        get() = lineEnd - lineStart
+
+    /**
+     * Finds the next complete line in [buffer], which must be in read mode, moving the buffer position
+     * to after its terminator. An optional '\r' before the '\n' is not included in the line.
+     *
+     * @return false if there is no complete line, leaving the buffer position unchanged.
+     * @throws IOException if the incomplete line already exceeds the maximum line length.
+     */
+    @Throws(IOException::class)
+    fun nextLine(buffer: ByteBuffer): Boolean {
+        val start = buffer.position()
+        for (i in start + scannedLength until buffer.limit()) {
+            if (buffer.get(i) == LF) {
+                lineStart = start
+                lineEnd = if (i > start && buffer.get(i - 1) == CR) i - 1 else i
+                buffer.position(i + 1)
+                scannedLength = 0
+                return true
+            }
+        }
+        scannedLength = buffer.remaining()
+        if (scannedLength > maxLineLength) {
+            throw IOException("line exceeds maximum length of $maxLineLength bytes")
+        }
+        return false
+    }
+
+    /**
+     * Takes the remaining bytes of [buffer] as a last line, without terminator, e.g., at the end of the stream.
+     *
+     * @return false if there are no remaining bytes.
+     */
+    fun lastLine(buffer: ByteBuffer): Boolean {
+        if (!buffer.hasRemaining()) {
+            return false
+        }
+        lineStart = buffer.position()
+        lineEnd = buffer.limit()
+        buffer.position(buffer.limit())
+        scannedLength = 0
+        return true
+    }
+
+    companion object {
+        private const val LF = '\n'.code.toByte()
+        private const val CR = '\r'.code.toByte()
+    }
+}
+
+/**
+ * Encoder for the replies of the line echo protocol, i.e., "line number: LINE IN UPPER-CASE",
+ * written into an output [ByteBuffer] so that the replies to many lines can be sent with a single write.
+ * ASCII lines are converted to upper-case in place and copied without creating strings;
+ * only lines with other characters are decoded with [charset].
+ * Not thread-safe, each connection must use its own instance.
+ */
+class ByteBufferLineEncoder(private val charset: Charset = Charset.defaultCharset()) {
+
+    /**
+     * Appends [bytes] and a line separator to [output], which must be in write mode.
+     *
+     * @return false if there is not enough space in [output], in which case nothing is appended.
+     */
+    fun appendLine(output: ByteBuffer, bytes: ByteArray): Boolean {
+        if (output.remaining() < bytes.size + AsciiLines.LINE_SEPARATOR.size) {
+            return false
+        }
+        output.put(bytes)
+        output.put(AsciiLines.LINE_SEPARATOR)
+        return true
+    }
+
+    /**
+     * Appends the reply to the line in `input[from, to[` to [output], converting the line to upper-case in place.
+     * Can be called again for the same line, e.g., after making space in [output].
+     *
+     * @return false if there is not enough space in [output], in which case nothing is appended.
+     */
+    fun appendReply(output: ByteBuffer, lineNo: Int, input: ByteBuffer, from: Int, to: Int): Boolean {
+        if (!toUpperCaseAscii(input, from, to)) {
+            // slow-path, for lines with non-ASCII characters
+            val bytes = ByteArray(to - from)
+            for (i in bytes.indices) {
+                bytes[i] = input.get(from + i)
+            }
+            val line = String(bytes, charset)
+            return appendLine(output, String.format("%d: %s", lineNo, line.uppercase()).toByteArray(charset))
+        }
+        val length = to - from
+        val decimalLength = AsciiLines.decimalLength(lineNo)
+        if (output.remaining() < decimalLength + LINE_NUMBER_SEPARATOR.size + length + AsciiLines.LINE_SEPARATOR.size) {
+            return false
+        }
+        putDecimal(output, lineNo, decimalLength)
+        output.put(LINE_NUMBER_SEPARATOR)
+        // bulk copy of the line, restoring the input bounds afterwards
+        val position = input.position()
+        val limit = input.limit()
+        input.limit(to).position(from)
+        output.put(input)
+        input.limit(limit).position(position)
+        output.put(AsciiLines.LINE_SEPARATOR)
+        return true
+    }
+
+    private fun toUpperCaseAscii(buffer: ByteBuffer, from: Int, to: Int): Boolean {
+        for (i in from until to) {
+            val b = buffer.get(i)
+            if (b < 0) {
+                return false
+            }
+            if (b >= LOWER_A && b <= LOWER_Z) {
+                buffer.put(i, (b - CASE_OFFSET).toByte())
+            }
+        }
+        return true
+    }
+
+    private fun putDecimal(output: ByteBuffer, value: Int, decimalLength: Int) {
+        val start = output.position()
+        var remaining = value
+        var i = start + decimalLength
+        do {
+            output.put(--i, ('0'.code + remaining % 10).toByte())
+            remaining /= 10
+        } while (remaining != 0)
+        output.position(start + decimalLength)
+    }
+
+    companion object {
+        private val LINE_NUMBER_SEPARATOR = ": ".toByteArray(Charsets.US_ASCII)
+        private const val LOWER_A = 'a'.code.toByte()
+        private const val LOWER_Z = 'z'.code.toByte()
+        private const val CASE_OFFSET = 'a'.code - 'A'.code
+
+        /**
+         * Maximum number of bytes added to a line by its reply, for ASCII lines.
+         */
+        val MAX_REPLY_OVERHEAD = AsciiLines.MAX_DECIMAL_LENGTH + LINE_NUMBER_SEPARATOR.size +
+            AsciiLines.LINE_SEPARATOR.size
+    }
+}
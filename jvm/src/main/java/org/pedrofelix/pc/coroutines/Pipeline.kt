@@ -0,0 +1,139 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Processing stage of a [Pipeline], e.g., validation, transformation or enrichment.
+ * Up to [parallelism] items are processed at the same time, each one on its own coroutine.
+ * The stage holds at most [parallelism] + [bufferSize] items, being processed or waiting for the next stage,
+ * after which it suspends its upstream, i.e., back-pressure.
+ * The same stage, and its [metrics], can be used by many flows at the same time, e.g., one per connection.
+ */
+class PipelineStage<T>(
+    val name: String,
+    val parallelism: Int = 1,
+    val bufferSize: Int = DEFAULT_BUFFER_SIZE,
+    private val process: suspend (T) -> T
+) {
+
+    init {
+        require(parallelism > 0) { "parallelism must be positive" }
+        require(bufferSize >= 0) { "bufferSize must not be negative" }
+    }
+
+    val metrics = StageMetrics(name)
+
+    /**
+     * Processes the items of [upstream], emitting the results in the order of the items.
+     */
+    fun applyTo(upstream: Flow<T>): Flow<T> = channelFlow {
+        val permits = Semaphore(parallelism)
+        // items in the stage, from being taken from upstream until being handed to the next stage
+        val capacity = Semaphore(parallelism + bufferSize)
+        // results in upstream order, each one possibly still being computed, and already bounded by capacity
+        val results = Channel<Deferred<T>>(Channel.UNLIMITED)
+        // items of this flow in the stage, removed from the queue depth if the flow is cancelled
+        val inStage = AtomicInteger(0)
+        val producer = launch {
+            upstream.collect { item ->
+                capacity.acquire()
+                permits.acquire()
+                inStage.incrementAndGet()
+                metrics.onQueued()
+                results.send(async {
+                    try {
+                        process(item)
+                    } finally {
+                        permits.release()
+                    }
+                })
+            }
+            results.close()
+        }
+        try {
+            for (result in results) {
+                send(result.await())
+                capacity.release()
+                inStage.decrementAndGet()
+                metrics.onProcessed()
+            }
+        } finally {
+            withContext(NonCancellable) {
+                producer.cancelAndJoin()
+            }
+            metrics.onDiscarded(inStage.getAndSet(0))
+        }
+    }
+
+    companion object {
+        const val DEFAULT_BUFFER_SIZE = 64
+    }
+}
+
+/**
+ * Sequence of stages, where each item goes through all the stages, in order.
+ * The stages run concurrently, and the order of the items is preserved.
+ */
+class Pipeline<T>(val stages: List<PipelineStage<T>>) {
+
+    fun applyTo(upstream: Flow<T>): Flow<T> =
+        stages.fold(upstream) { flow, stage -> stage.applyTo(flow) }
+
+    /**
+     * Returns one line per stage, with the throughput since the previous call and the current queue depth.
+     */
+    fun formatMetrics(): List<String> = stages.map { it.metrics.format() }
+}
+
+/**
+ * Counters of a [PipelineStage], shared by all the flows using the stage.
+ */
+class StageMetrics(val name: String) {
+    private val queued = LongAdder()
+    private val processed = LongAdder()
+    private val discarded = LongAdder()
+    private val lastProcessed = AtomicLong(0)
+    private val lastFormatNanos = AtomicLong(System.nanoTime())
+
+    fun onQueued() {
+        queued.increment()
+    }
+
+    fun onProcessed() {
+        processed.increment()
+    }
+
+    fun onDiscarded(count: Int) {
+        discarded.add(count.toLong())
+    }
+
+    val processedCount: Long
+        get() = processed.sum()
+
+    /**
+     * Items that entered the stage and were not yet handed to the next one.
+     */
+    val queueDepth: Long
+        get() = queued.sum() - processed.sum() - discarded.sum()
+
+    internal fun format(): String {
+        val now = System.nanoTime()
+        val elapsedNanos = now - lastFormatNanos.getAndSet(now)
+        val total = processed.sum()
+        val delta = total - lastProcessed.getAndSet(total)
+        val perSecond = if (elapsedNanos > 0) delta * 1_000_000_000 / elapsedNanos else 0
+        return "stage $name: processed=$total perSecond=$perSecond queueDepth=$queueDepth"
+    }
+}
@@ -1,30 +1,28 @@
 package org.pedrofelix.pc.coroutines
 
 import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.sync.Semaphore
+import org.pedrofelix.pc.apps.echoserver.AsciiLines
 import org.slf4j.LoggerFactory
+import java.io.IOException
 import java.net.InetSocketAddress
 import java.nio.ByteBuffer
 import java.nio.channels.*
-import java.nio.channels.CompletionHandler
 import java.util.concurrent.Executors
-import java.util.concurrent.TimeUnit
+import kotlin.coroutines.EmptyCoroutineContext
 import kotlin.coroutines.resume
-import kotlin.coroutines.resumeWithException
-import kotlin.coroutines.suspendCoroutine
 
 val dispatcher = Executors.newFixedThreadPool(2).asCoroutineDispatcher()
 
-val singleThreadDispatcher = Executors.newFixedThreadPool(1).asCoroutineDispatcher()
-
-val scheduledExecutor = Executors.newSingleThreadScheduledExecutor()
-
 suspend fun myDelay(ms: Long): Unit {
 
     logger.info("Before suspendCoroutine")
     try {
         suspendCancellableCoroutine<Unit> { continuation ->
             logger.info("Before schedule")
-            val future = scheduledExecutor.schedule(
+            val timeout = timingWheel.schedule(
                 {
                     // callback/Runnable called after the time elapses
                     // call the continuation
@@ -32,8 +30,10 @@ suspend fun myDelay(ms: Long): Unit {
                     continuation.resume(Unit)
 
                 },
-                ms, TimeUnit.MILLISECONDS
+                ms
             )
+            // otherwise the timeout would remain scheduled after the coroutine is cancelled
+            continuation.invokeOnCancellation { timeout.cancel() }
         }
     }catch(ex: CancellationException) {
         logger.info("CancellationException")
@@ -65,22 +65,78 @@ fun main() {
     }
 }
 
-class ServerUsingCoroutines {
+/**
+ * Echo server using coroutines over NIO2 channels.
+ * Each connection uses a direct buffer from [bufferPool], returned when the connection ends,
+ * including when its coroutine is cancelled.
+ * The channels use [channelGroup], or the default group if null.
+ *
+ * With [eventLoops], each connection runs on a single loop of the group, selected when it is accepted,
+ * instead of on the dispatcher of the accept loop.
+ * NIO2 does not allow choosing the thread where the completions of a channel run, so the I/O completions
+ * still run on the threads of the channel group and each one is handed to the loop owning the connection.
+ *
+ * At most [maxConnections] connections are handled at the same time.
+ * When all the connection slots are taken, the accept loop suspends without accepting,
+ * so new clients wait in the kernel's accept backlog and no memory is used for them.
+ *
+ * With [Protocol.LINE], the server uses the same line protocol as the Java echo servers, i.e., greeting,
+ * numbered upper-case replies and "exit", with lines up to the buffer size minus the reply overhead.
+ * If a [pipeline] is given, each line goes through its stages instead of being upper-cased,
+ * and the replies are the results, in the order of the lines.
+ */
+class ServerUsingCoroutines(
+    private val bufferPool: DirectBufferPool = DirectBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS_PER_SLAB),
+    private val channelGroup: AsynchronousChannelGroup? = null,
+    val maxConnections: Int = DEFAULT_MAX_CONNECTIONS,
+    private val protocol: Protocol = Protocol.RAW,
+    private val pipeline: Pipeline<String>? = null,
+    private val eventLoops: EventLoopGroup? = null
+) {
+
+    enum class Protocol {
+        // echoes the received bytes
+        RAW,
+        LINE
+    }
+
+    private val connectionSlots = Semaphore(maxConnections)
+
+    val activeConnections: Int
+        get() = maxConnections - connectionSlots.availablePermits
 
     suspend fun serverLoop() {
         // NIO2 (New IO 2)
-        val serverSocket = AsynchronousServerSocketChannel.open()
-        serverSocket.bind(InetSocketAddress("0.0.0.0", 8080))
+        val serverSocket = AsynchronousServerSocketChannel.open(channelGroup)
+        serverSocket.bind(InetSocketAddress("0.0.0.0", 8080), BACKLOG)
         var clientId = 0
         // Structured Concurrency
         coroutineScope {
+            if (pipeline != null) {
+                launch { reportPipelineMetrics(pipeline) }
+            }
             try {
                 while (true) {
-                    val socket = serverSocket.acceptAsync()
-                    delay(1)
-                    logger.info("client socket accepted")
-                    launch {
-                        clientLoop(socket, ++clientId)
+                    // suspends, does not block the dispatcher thread
+                    connectionSlots.acquire()
+                    val socket = try {
+                        serverSocket.acceptAsync()
+                    } catch (ex: Throwable) {
+                        connectionSlots.release()
+                        throw ex
+                    }
+                    val id = ++clientId
+                    val loop = eventLoops?.next()
+                    logger.info("client socket accepted, {} active connections of {}, running on {}",
+                        activeConnections, maxConnections, loop ?: "accept dispatcher")
+                    val job = launch(loop?.dispatcher ?: EmptyCoroutineContext) {
+                        clientLoop(socket, id)
+                    }
+                    loop?.register(job)
+                    // also runs if the coroutine is cancelled before starting
+                    job.invokeOnCompletion {
+                        socket.close()
+                        connectionSlots.release()
                     }
                 }
             } finally {
@@ -90,24 +146,22 @@ class ServerUsingCoroutines {
         logger.info("after coroutineScope")
     }
 
-    private suspend fun clientLoop(socket: AsynchronousSocketChannel, clientId: Int) {
+    private suspend fun clientLoop(channel: AsynchronousSocketChannel, clientId: Int) {
+        val socket = SuspendingSocketChannel(channel)
         try {
             logger.info("{}: Starting client", clientId)
-            val buffer = ByteBuffer.allocate(2)
-            while (true) {
-                logger.info("{}: reading", clientId)
-                val readLen = socket.readAsync(buffer)
-                logger.info("{}: read {} bytes", clientId, readLen)
-                if (readLen == -1) {
-                    break
+            when (protocol) {
+                Protocol.RAW -> rawEchoLoop(socket, clientId)
+                Protocol.LINE -> if (pipeline == null) {
+                    lineEchoLoop(socket, clientId)
+                } else {
+                    pipelinedLineLoop(socket, clientId, pipeline)
                 }
-                buffer.flip()
-                logger.info("{}: writing", clientId)
-                socket.writeAllAsync(buffer)
-                buffer.clear()
             }
         } catch (ex: AsynchronousCloseException) {
             logger.info("{}: socket closed, ending client", clientId)
+        } catch (ex: IOException) {
+            logger.warn("{}: connection ended with IO error: {}", clientId, ex.message)
         } catch (ex: CancellationException) {
             logger.info("Cancellation detected")
         } finally {
@@ -116,58 +170,245 @@ class ServerUsingCoroutines {
         }
     }
 
-    companion object {
-        private val logger = LoggerFactory.getLogger(ServerUsingCoroutines::class.java)
+    private suspend fun rawEchoLoop(socket: SuspendingSocketChannel, clientId: Int) {
+        bufferPool.acquire().use { pooledBuffer ->
+            val buffer = pooledBuffer.buffer
+            while (true) {
+                logger.debug("{}: reading", clientId)
+                val readLen = socket.read(buffer)
+                logger.debug("{}: read {} bytes", clientId, readLen)
+                if (readLen == -1) {
+                    break
+                }
+                buffer.flip()
+                logger.debug("{}: writing", clientId)
+                socket.writeAll(buffer)
+                buffer.clear()
+            }
+        }
     }
 
-}
-
-suspend fun AsynchronousServerSocketChannel.acceptAsync() =
-    suspendCoroutine<AsynchronousSocketChannel> { continuation ->
-
-        this.accept(Unit, object : CompletionHandler<AsynchronousSocketChannel, Unit> {
-            override fun completed(channel: AsynchronousSocketChannel, attachment: Unit) {
-                continuation.resume(channel)
+    /**
+     * Replies to all the complete lines of each read with a single write.
+     */
+    private suspend fun lineEchoLoop(socket: SuspendingSocketChannel, clientId: Int) {
+        bufferPool.acquire().use { pooledInput ->
+            bufferPool.acquire().use { pooledOutput ->
+                val input = pooledInput.buffer
+                val output = pooledOutput.buffer
+                val decoder = ByteBufferLineDecoder(bufferPool.bufferSize - ByteBufferLineEncoder.MAX_REPLY_OVERHEAD)
+                val encoder = ByteBufferLineEncoder()
+                var lineNo = 0
+                appendLine(socket, output, encoder, "Hi! You are client number $clientId".toByteArray())
+                // empty, in read mode
+                input.flip()
+                while (true) {
+                    while (decoder.nextLine(input)) {
+                        if (isExitLine(input, decoder)) {
+                            appendLine(socket, output, encoder, BYE_LINE)
+                            flush(socket, output)
+                            return
+                        }
+                        appendReply(socket, output, encoder, lineNo++, input, decoder)
+                    }
+                    flush(socket, output)
+                    input.compact()
+                    val readLen = socket.read(input)
+                    input.flip()
+                    if (readLen == -1) {
+                        // a last line without terminator is still echoed
+                        if (decoder.lastLine(input)) {
+                            appendReply(socket, output, encoder, lineNo, input, decoder)
+                        }
+                        appendLine(socket, output, encoder, BYE_LINE)
+                        flush(socket, output)
+                        return
+                    }
+                }
             }
+        }
+    }
 
-            override fun failed(exception: Throwable, attachment: Unit) {
-                continuation.resumeWithException(exception)
+    /**
+     * Reads the lines and writes the replies on different coroutines, with the pipeline stages in between.
+     * When the stages are full the reader suspends, and stops reading from the socket.
+     */
+    private suspend fun pipelinedLineLoop(socket: SuspendingSocketChannel, clientId: Int, pipeline: Pipeline<String>) {
+        bufferPool.acquire().use { pooledInput ->
+            bufferPool.acquire().use { pooledOutput ->
+                val input = pooledInput.buffer
+                val output = pooledOutput.buffer
+                val encoder = ByteBufferLineEncoder()
+                val lines = flow {
+                    val decoder = ByteBufferLineDecoder(bufferPool.bufferSize - ByteBufferLineEncoder.MAX_REPLY_OVERHEAD)
+                    input.flip()
+                    while (true) {
+                        while (decoder.nextLine(input)) {
+                            if (isExitLine(input, decoder)) {
+                                return@flow
+                            }
+                            emit(lineString(input, decoder))
+                        }
+                        input.compact()
+                        val readLen = socket.read(input)
+                        input.flip()
+                        if (readLen == -1) {
+                            if (decoder.lastLine(input)) {
+                                emit(lineString(input, decoder))
+                            }
+                            return@flow
+                        }
+                    }
+                }
+                appendLine(socket, output, encoder, "Hi! You are client number $clientId".toByteArray())
+                flush(socket, output)
+                coroutineScope {
+                    val replies = Channel<String>(Channel.BUFFERED)
+                    launch {
+                        pipeline.applyTo(lines).collect { replies.send(it) }
+                    }.invokeOnCompletion { cause -> replies.close(cause) }
+                    var lineNo = 0
+                    for (reply in replies) {
+                        appendLine(socket, output, encoder, "${lineNo++}: $reply".toByteArray())
+                        // the replies already available are sent with a single write
+                        while (true) {
+                            val next = replies.tryReceive().getOrNull() ?: break
+                            appendLine(socket, output, encoder, "${lineNo++}: $next".toByteArray())
+                        }
+                        flush(socket, output)
+                    }
+                }
+                appendLine(socket, output, encoder, BYE_LINE)
+                flush(socket, output)
             }
-        })
+        }
     }
 
+    private fun lineString(input: ByteBuffer, decoder: ByteBufferLineDecoder): String {
+        val bytes = ByteArray(decoder.lineLength)
+        for (i in bytes.indices) {
+            bytes[i] = input.get(decoder.lineStart + i)
+        }
+        return String(bytes)
+    }
 
-private val logger = LoggerFactory.getLogger("Utils")
+    private suspend fun reportPipelineMetrics(pipeline: Pipeline<String>) {
+        while (true) {
+            wheelDelay(PIPELINE_METRICS_PERIOD_IN_MS)
+            pipeline.formatMetrics().forEach { logger.info(it) }
+        }
+    }
 
-suspend fun AsynchronousByteChannel.readAsync(buffer: ByteBuffer) =
-    suspendCoroutine<Int> { continuation ->
-        this.read(buffer, Unit, object : CompletionHandler<Int, Unit> {
-            override fun completed(result: Int, attachment: Unit) {
-                continuation.resume(result)
+    private fun isExitLine(input: ByteBuffer, decoder: ByteBufferLineDecoder): Boolean {
+        if (decoder.lineLength != EXIT_LINE.size) {
+            return false
+        }
+        for (i in EXIT_LINE.indices) {
+            if (input.get(decoder.lineStart + i) != EXIT_LINE[i]) {
+                return false
             }
+        }
+        return true
+    }
 
-            override fun failed(exc: Throwable, attachment: Unit) {
-                continuation.resumeWithException(exc)
+    private suspend fun appendReply(
+        socket: SuspendingSocketChannel, output: ByteBuffer, encoder: ByteBufferLineEncoder,
+        lineNo: Int, input: ByteBuffer, decoder: ByteBufferLineDecoder
+    ) {
+        if (!encoder.appendReply(output, lineNo, input, decoder.lineStart, decoder.lineEnd)) {
+            flush(socket, output)
+            if (!encoder.appendReply(output, lineNo, input, decoder.lineStart, decoder.lineEnd)) {
+                throw IOException("reply to line $lineNo exceeds the buffer size")
             }
-        })
+        }
     }
 
-suspend fun AsynchronousByteChannel.writeAllAsync(buffer: ByteBuffer) {
-    do {
-        this.writeAsync(buffer)
-    } while (buffer.remaining() != 0)
-}
+    /**
+     * Appends a line to [output], or writes it directly if it is larger than the buffer,
+     * e.g., a line that grew in the pipeline stages after being accepted by the decoder.
+     */
+    private suspend fun appendLine(
+        socket: SuspendingSocketChannel, output: ByteBuffer, encoder: ByteBufferLineEncoder, bytes: ByteArray
+    ) {
+        if (!encoder.appendLine(output, bytes)) {
+            flush(socket, output)
+            if (!encoder.appendLine(output, bytes)) {
+                socket.writeAll(arrayOf(ByteBuffer.wrap(bytes), ByteBuffer.wrap(AsciiLines.LINE_SEPARATOR)))
+            }
+        }
+    }
 
-suspend fun AsynchronousByteChannel.writeAsync(buffer: ByteBuffer) =
-    suspendCoroutine<Int> { continuation ->
-        this.write(buffer, Unit, object : CompletionHandler<Int, Unit> {
+    private suspend fun flush(socket: SuspendingSocketChannel, output: ByteBuffer) {
+        output.flip()
+        if (output.hasRemaining()) {
+            socket.writeAll(output)
+        }
+        output.clear()
+    }
 
-            override fun completed(result: Int, attachment: Unit) {
-                continuation.resume(result)
-            }
+    companion object {
+        private val logger = LoggerFactory.getLogger(ServerUsingCoroutines::class.java)
+        private val EXIT_LINE = "exit".toByteArray(Charsets.US_ASCII)
+        private val BYE_LINE = "Bye.".toByteArray(Charsets.US_ASCII)
+        const val DEFAULT_BUFFER_SIZE = 16 * 1024
+        const val DEFAULT_BUFFERS_PER_SLAB = 64
+        const val DEFAULT_MAX_CONNECTIONS = 10_000
+        private const val BACKLOG = 1024
+        private const val PIPELINE_METRICS_PERIOD_IN_MS = 10_000L
+
+        /**
+         * Example pipeline: replaces control characters, then converts to upper-case, then adds the line length.
+         */
+        fun examplePipeline(parallelism: Int) = Pipeline(
+            listOf(
+                PipelineStage<String>("validation") { line ->
+                    line.map { if (it.isISOControl()) '?' else it }.joinToString("")
+                },
+                PipelineStage("upper-case", parallelism) { line -> line.uppercase() },
+                PipelineStage("enrichment") { line -> "$line (${line.length} chars)" }
+            )
+        )
 
-            override fun failed(exc: Throwable, attachment: Unit) {
-                continuation.resumeWithException(exc)
+        /**
+         * Usage: ServerUsingCoroutines [buffer size] [buffers per slab] [share channel group threads]
+         *                               [max connections] [protocol: raw or line]
+         *                               [example pipeline parallelism, 0 for none]
+         *                               [event loops, 0 for none] [balancing: round_robin or least_loaded]
+         *
+         * When sharing, the coroutines and the I/O completions run on a [ChannelGroupDispatcher] with
+         * a thread per core, instead of on [dispatcher] and on the default channel group, respectively.
+         * With event loops, the connections run on an [EventLoopGroup] instead, and only the accept loop
+         * runs on the previous dispatcher.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            val bufferSize = args.getOrNull(0)?.toInt() ?: DEFAULT_BUFFER_SIZE
+            val buffersPerSlab = args.getOrNull(1)?.toInt() ?: DEFAULT_BUFFERS_PER_SLAB
+            val isSharingThreads = args.getOrNull(2)?.toBoolean() ?: false
+            val maxConnections = args.getOrNull(3)?.toInt() ?: DEFAULT_MAX_CONNECTIONS
+            val protocol = args.getOrNull(4)?.let { Protocol.valueOf(it.uppercase()) } ?: Protocol.RAW
+            val pipelineParallelism = args.getOrNull(5)?.toInt() ?: 0
+            val pipeline = if (pipelineParallelism > 0) examplePipeline(pipelineParallelism) else null
+            val nEventLoops = args.getOrNull(6)?.toInt() ?: 0
+            val balancing = args.getOrNull(7)?.let { EventLoopGroup.Balancing.valueOf(it.uppercase()) }
+                ?: EventLoopGroup.Balancing.LEAST_LOADED
+            val eventLoops = if (nEventLoops > 0) EventLoopGroup(nEventLoops, balancing) else null
+            val bufferPool = DirectBufferPool(bufferSize, buffersPerSlab)
+            if (isSharingThreads) {
+                val groupDispatcher = ChannelGroupDispatcher()
+                runBlocking(groupDispatcher) {
+                    ServerUsingCoroutines(
+                        bufferPool, groupDispatcher.channelGroup, maxConnections, protocol, pipeline, eventLoops
+                    ).serverLoop()
+                }
+            } else {
+                runBlocking(dispatcher) {
+                    ServerUsingCoroutines(bufferPool, null, maxConnections, protocol, pipeline, eventLoops).serverLoop()
+                }
             }
-        })
-    }
\ No newline at end of file
+        }
+    }
+
+}
+
+private val logger = LoggerFactory.getLogger("Utils")
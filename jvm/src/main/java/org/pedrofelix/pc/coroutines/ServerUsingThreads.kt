@@ -5,13 +5,17 @@ import java.net.InetSocketAddress
 import java.net.ServerSocket
 import java.net.Socket
 
-fun main() {
-    val server = ServerUsingThreads()
+/**
+ * Usage: ServerUsingThreadsKt [buffer size]
+ */
+fun main(args: Array<String>) {
+    val bufferSize = args.getOrNull(0)?.toInt() ?: ServerUsingThreads.DEFAULT_BUFFER_SIZE
+    val server = ServerUsingThreads(bufferSize)
     val th = server.start();
     th.join()
 }
 
-class ServerUsingThreads {
+class ServerUsingThreads(private val bufferSize: Int = DEFAULT_BUFFER_SIZE) {
 
     fun start(): Thread {
         val th = Thread { serverLoop() }
@@ -38,25 +42,27 @@ class ServerUsingThreads {
             logger.info("{}: Starting client", clientId)
             val inputStream = socket.getInputStream()
             val outputStream = socket.getOutputStream()
-            val buffer = ByteArray(2)
+            val buffer = ByteArray(bufferSize)
             while (true) {
-                logger.info("{}: reading", clientId)
+                logger.debug("{}: reading", clientId)
                 val readLen = inputStream.read(buffer)
-                logger.info("{}: read {} bytes", clientId, readLen)
+                logger.debug("{}: read {} bytes", clientId, readLen)
                 if (readLen == -1) {
                     break
                 }
-                logger.info("{}: writing", clientId)
+                logger.debug("{}: writing", clientId)
                 outputStream.write(buffer, 0, readLen)
             }
         } catch (ex: Exception) {
             logger.error("{}: exception {}", clientId, ex.message)
         } finally {
             logger.info("{}: ending", clientId)
+            socket.close()
         }
     }
 
     companion object {
         private val logger = LoggerFactory.getLogger(ServerUsingThreads::class.java)
+        const val DEFAULT_BUFFER_SIZE = 16 * 1024
     }
 }
\ No newline at end of file
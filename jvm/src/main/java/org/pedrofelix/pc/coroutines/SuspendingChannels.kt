@@ -0,0 +1,119 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.suspendCancellableCoroutine
+import java.io.Closeable
+import java.nio.ByteBuffer
+import java.nio.channels.AsynchronousByteChannel
+import java.nio.channels.AsynchronousServerSocketChannel
+import java.nio.channels.AsynchronousSocketChannel
+import java.nio.channels.CompletionHandler
+import java.util.concurrent.TimeUnit
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/*
+ * Suspending functions over NIO2 channels.
+ * The continuation is passed as the operation's attachment, so the same completion handler object
+ * is used by all the operations, instead of creating one per operation.
+ * NIO2 operations cannot be cancelled, so cancelling a suspended coroutine closes the channel,
+ * which completes the pending operation with an AsynchronousCloseException.
+ * Each call of these extension functions allocates the cancellation handler lambda, since it captures the channel.
+ */
+
+private class ResumingHandler<T> : CompletionHandler<T, CancellableContinuation<T>> {
+    override fun completed(result: T, continuation: CancellableContinuation<T>) {
+        continuation.resume(result)
+    }
+
+    override fun failed(exc: Throwable, continuation: CancellableContinuation<T>) {
+        continuation.resumeWithException(exc)
+    }
+}
+
+private val intHandler = ResumingHandler<Int>()
+private val longHandler = ResumingHandler<Long>()
+private val acceptHandler = ResumingHandler<AsynchronousSocketChannel>()
+
+suspend fun AsynchronousServerSocketChannel.acceptAsync(): AsynchronousSocketChannel =
+    suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { close() }
+        accept(continuation, acceptHandler)
+    }
+
+suspend fun AsynchronousByteChannel.readAsync(buffer: ByteBuffer): Int =
+    suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { close() }
+        read(buffer, continuation, intHandler)
+    }
+
+suspend fun AsynchronousByteChannel.writeAsync(buffer: ByteBuffer): Int =
+    suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { close() }
+        write(buffer, continuation, intHandler)
+    }
+
+suspend fun AsynchronousByteChannel.writeAllAsync(buffer: ByteBuffer) {
+    do {
+        this.writeAsync(buffer)
+    } while (buffer.remaining() != 0)
+}
+
+/**
+ * Suspending operations over a connected [AsynchronousSocketChannel], to be used by a single connection.
+ * Unlike the extension functions, the cancellation handler lambda is created once per connection.
+ * Each operation still allocates the continuation created by [suspendCancellableCoroutine] and,
+ * in kotlinx.coroutines 1.6, the wrapper that [CancellableContinuation.invokeOnCancellation] creates around
+ * any handler that is not one of its internal handler types.
+ */
+class SuspendingSocketChannel(val channel: AsynchronousSocketChannel) : Closeable {
+
+    private val closeOnCancellation: (Throwable?) -> Unit = { close() }
+
+    suspend fun read(buffer: ByteBuffer): Int =
+        suspendCancellableCoroutine { continuation ->
+            continuation.invokeOnCancellation(closeOnCancellation)
+            channel.read(buffer, continuation, intHandler)
+        }
+
+    /**
+     * Scattering read into [buffers], returning the total number of bytes read or -1 on end of stream.
+     */
+    suspend fun read(buffers: Array<ByteBuffer>): Long =
+        suspendCancellableCoroutine { continuation ->
+            continuation.invokeOnCancellation(closeOnCancellation)
+            // a zero timeout means no timeout
+            channel.read(buffers, 0, buffers.size, 0L, TimeUnit.MILLISECONDS, continuation, longHandler)
+        }
+
+    suspend fun write(buffer: ByteBuffer): Int =
+        suspendCancellableCoroutine { continuation ->
+            continuation.invokeOnCancellation(closeOnCancellation)
+            channel.write(buffer, continuation, intHandler)
+        }
+
+    /**
+     * Gathering write from [buffers], returning the total number of bytes written.
+     */
+    suspend fun write(buffers: Array<ByteBuffer>): Long =
+        suspendCancellableCoroutine { continuation ->
+            continuation.invokeOnCancellation(closeOnCancellation)
+            channel.write(buffers, 0, buffers.size, 0L, TimeUnit.MILLISECONDS, continuation, longHandler)
+        }
+
+    suspend fun writeAll(buffer: ByteBuffer) {
+        do {
+            write(buffer)
+        } while (buffer.hasRemaining())
+    }
+
+    suspend fun writeAll(buffers: Array<ByteBuffer>) {
+        do {
+            write(buffers)
+        } while (buffers.last().hasRemaining())
+    }
+
+    override fun close() {
+        channel.close()
+    }
+}
@@ -0,0 +1,30 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.suspendCancellableCoroutine
+import org.pedrofelix.pc.utils.HashedTimingWheel
+import kotlin.coroutines.resume
+
+private const val TICK_DURATION_IN_MS = 10L
+private const val TICKS_PER_WHEEL = 512
+
+/**
+ * Timing wheel shared by the [wheelDelay] calls that do not provide one.
+ */
+val timingWheel = HashedTimingWheel(TICK_DURATION_IN_MS, TICKS_PER_WHEEL)
+
+/**
+ * Suspends the coroutine for [ms] milliseconds, precise to a tick of [wheel].
+ * Unlike a scheduled executor, scheduling and cancelling are O(1), so it suits a large number of
+ * concurrent delays, e.g., one per connection.
+ * The coroutine is resumed on the wheel's thread and then dispatched to its own dispatcher.
+ * Cancelling the coroutine cancels the timeout, so cancelled delays do not remain in the wheel.
+ */
+suspend fun wheelDelay(ms: Long, wheel: HashedTimingWheel = timingWheel) {
+    if (ms <= 0) {
+        return
+    }
+    suspendCancellableCoroutine<Unit> { continuation ->
+        val timeout = wheel.schedule({ continuation.resume(Unit) }, ms)
+        continuation.invokeOnCancellation { timeout.cancel() }
+    }
+}
@@ -0,0 +1,80 @@
+package org.pedrofelix.pc.lockfree;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue, backed by a ring buffer, for multiple producers and a single consumer.
+ * Each slot has a sequence number stating if it is ready to be written by the producer of a given position,
+ * or ready to be read by the consumer, so producers only contend on the tail position.
+ * A full queue makes {@link #offer} fail immediately instead of waiting.
+ */
+public class BoundedMpscQueue<T> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong(0);
+
+    // only accessed by the consumer thread
+    private long head = 0;
+
+    public BoundedMpscQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; ++i) {
+            // slot i is ready to be written by the producer of position i
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item to the queue, if there is space for it. Can be called by any thread.
+     *
+     * @return {@code false} if the queue is full.
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long observedTail = tail.get();
+            int index = (int) observedTail & mask;
+            long diff = sequences.get(index) - observedTail;
+            if (diff == 0) {
+                if (tail.compareAndSet(observedTail, observedTail + 1)) {
+                    items.lazySet(index, item);
+                    // publishes the item to the consumer
+                    sequences.set(index, observedTail + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // the slot still has the item from the previous round, i.e., the queue is full
+                return false;
+            }
+            // another producer took this position, repeat
+        }
+    }
+
+    /**
+     * Removes an item from the queue. Must only be called by the consumer thread.
+     *
+     * @return the removed item, or {@code null} if the queue is empty.
+     */
+    public T poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T item = items.get(index);
+        items.lazySet(index, null);
+        // makes the slot ready for the producer of the next round
+        sequences.set(index, head + capacity);
+        head += 1;
+        return item;
+    }
+}
@@ -3,6 +3,8 @@ package org.pedrofelix.pc.sketches;
 import org.pedrofelix.pc.utils.NodeLinkedList;
 import org.pedrofelix.pc.utils.Timeouts;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -23,8 +25,33 @@ public class SimpleMessageQueue<T> {
     private final Lock monitor = new ReentrantLock();
     private final NodeLinkedList<T> messages = new NodeLinkedList<>();
     private final NodeLinkedList<DequeueRequest<T>> requests = new NodeLinkedList<>();
+    private final int capacity;
+
+    public SimpleMessageQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a queue holding at most {@code capacity} messages.
+     * Messages handed directly to waiting dequeuers do not count to the capacity.
+     */
+    public SimpleMessageQueue(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
 
     public void enqueue(T message) {
+        if(!tryEnqueue(message)) {
+            throw new IllegalStateException("queue is full");
+        }
+    }
+
+    /**
+     * Enqueues a message without blocking, returning {@code false} if the queue is full.
+     */
+    public boolean tryEnqueue(T message) {
         monitor.lock();
         try{
 
@@ -32,15 +59,28 @@ public class SimpleMessageQueue<T> {
                 var request = requests.pull();
                 request.value.message = message;
                 request.value.condition.signal();
-            } else {
-                messages.enqueue(message);
+                return true;
+            }
+            if(messages.getCount() >= capacity) {
+                return false;
             }
+            messages.enqueue(message);
+            return true;
 
         }finally{
             monitor.unlock();
         }
     }
 
+    public int getCount() {
+        monitor.lock();
+        try{
+            return messages.getCount();
+        }finally{
+            monitor.unlock();
+        }
+    }
+
     public Optional<T> dequeue(long timeout) throws InterruptedException {
         monitor.lock();
         try{
@@ -91,6 +131,32 @@ public class SimpleMessageQueue<T> {
         }
     }
 
+    /**
+     * Waits up to {@code timeout} for a message, like {@link #dequeue}, and then also takes
+     * the messages already in the queue, up to {@code maxMessages} in total, without waiting.
+     * Returns an empty list on timeout.
+     */
+    public List<T> dequeueBatch(int maxMessages, long timeout) throws InterruptedException {
+        if(maxMessages <= 0) {
+            throw new IllegalArgumentException("maxMessages must be positive");
+        }
+        monitor.lock();
+        try{
 
+            // the lock is reentrant and await releases all the holds, so dequeue can wait while this lock is held
+            var first = dequeue(timeout);
+            if(first.isEmpty()) {
+                return List.of();
+            }
+            var batch = new ArrayList<T>(Math.min(maxMessages, messages.getCount() + 1));
+            batch.add(first.get());
+            while(batch.size() < maxMessages && messages.isNotEmpty()) {
+                batch.add(messages.pull().value);
+            }
+            return batch;
 
+        }finally{
+            monitor.unlock();
+        }
+    }
 }
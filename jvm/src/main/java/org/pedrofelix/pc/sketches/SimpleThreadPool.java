@@ -1,52 +1,157 @@
 package org.pedrofelix.pc.sketches;
 
 import org.pedrofelix.pc.utils.NodeLinkedList;
+import org.pedrofelix.pc.utils.Timeouts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 public class SimpleThreadPool {
 
+    private static final Logger logger = LoggerFactory.getLogger(SimpleThreadPool.class);
+
     private final int maxWorkers;
+    private final int maxPendingWorkItems;
+    private final long keepAliveInMs;
     private final Object monitor = new Object();
     private NodeLinkedList<Runnable> workItems = new NodeLinkedList<>();
     private int currentWorkers = 0;
+    private int waitingWorkers = 0;
 
     public SimpleThreadPool(int maxWorkers) {
+        this(maxWorkers, Integer.MAX_VALUE, 0);
+    }
+
+    /**
+     * @param maxWorkers          the maximum number of worker threads.
+     * @param maxPendingWorkItems the maximum number of work items waiting for a worker thread.
+     * @param keepAliveInMs       the time a worker thread waits for a new work item before ending.
+     */
+    public SimpleThreadPool(int maxWorkers, int maxPendingWorkItems, long keepAliveInMs) {
         this.maxWorkers = maxWorkers;
+        this.maxPendingWorkItems = maxPendingWorkItems;
+        this.keepAliveInMs = keepAliveInMs;
     }
 
     public void execute(Runnable work) {
+        if (!tryExecute(work)) {
+            throw new RejectedExecutionException("maximum number of pending work items reached");
+        }
+    }
+
+    /**
+     * Executes the work item, reusing a waiting worker thread if one is available.
+     *
+     * @return {@code false} if the work item was rejected because the pending work items queue is full.
+     */
+    public boolean tryExecute(Runnable work) {
         synchronized (monitor) {
+            if (workItems.getCount() < waitingWorkers) {
+                // hand-off to a worker thread that is waiting for work
+                workItems.enqueue(work);
+                monitor.notify();
+                return true;
+            }
             if (currentWorkers < maxWorkers) {
                 var th = new Thread(() -> threadLoop(work));
                 th.start();
                 currentWorkers += 1;
-            } else {
-                workItems.enqueue(work);
+                return true;
             }
+            if (workItems.getCount() >= maxPendingWorkItems) {
+                return false;
+            }
+            workItems.enqueue(work);
+            return true;
         }
     }
+
     private Optional<Runnable> getWork() {
         synchronized (monitor) {
+            // fast-path
             if (workItems.isNotEmpty()) {
                 return Optional.of(workItems.pull().value);
-            } else {
+            }
+            if (Timeouts.noWait(keepAliveInMs)) {
                 currentWorkers -= 1;
                 return Optional.empty();
             }
+
+            // wait-path
+            long deadline = Timeouts.deadlineFor(keepAliveInMs);
+            long remaining = Timeouts.remainingUntil(deadline);
+            waitingWorkers += 1;
+            try {
+                while (true) {
+                    try {
+                        monitor.wait(remaining);
+                    } catch (InterruptedException e) {
+                        if (workItems.isNotEmpty()) {
+                            Thread.currentThread().interrupt();
+                            return Optional.of(workItems.pull().value);
+                        }
+                        currentWorkers -= 1;
+                        return Optional.empty();
+                    }
+
+                    if (workItems.isNotEmpty()) {
+                        return Optional.of(workItems.pull().value);
+                    }
+
+                    remaining = Timeouts.remainingUntil(deadline);
+                    if (Timeouts.isTimeout(remaining)) {
+                        currentWorkers -= 1;
+                        return Optional.empty();
+                    }
+                }
+            } finally {
+                waitingWorkers -= 1;
+            }
         }
     }
 
     private void threadLoop(Runnable firstWork) {
-        firstWork.run();
-        while (true) {
-            var maybeWork = getWork();
-            maybeWork.ifPresent(work -> work.run());
-            if (maybeWork.isEmpty()) {
-                return;
+        // false when getWork already removed this worker from currentWorkers
+        boolean isCounted = true;
+        try {
+            safeRun(firstWork);
+            while (true) {
+                var maybeWork = getWork();
+                if (maybeWork.isEmpty()) {
+                    isCounted = false;
+                    return;
+                }
+                safeRun(maybeWork.get());
+            }
+        } finally {
+            if (isCounted) {
+                // ending due to an Error thrown by a work item
+                onWorkerFailed();
+            }
+        }
+    }
+
+    private void onWorkerFailed() {
+        synchronized (monitor) {
+            currentWorkers -= 1;
+            // otherwise the pending work items could remain without a worker thread to run them
+            if (workItems.isNotEmpty() && waitingWorkers == 0) {
+                var work = workItems.pull().value;
+                var th = new Thread(() -> threadLoop(work));
+                th.start();
+                currentWorkers += 1;
             }
         }
     }
+
+    private static void safeRun(Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            // the worker thread continues to be used for other work items
+            logger.warn("work item ended with exception", e);
+        }
+    }
 }
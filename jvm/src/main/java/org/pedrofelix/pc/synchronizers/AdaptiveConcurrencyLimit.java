@@ -0,0 +1,199 @@
+package org.pedrofelix.pc.synchronizers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to the observed latency, using AIMD (additive increase, multiplicative decrease).
+ * The permits are units of an {@link NArySemaphore}, so acquisition keeps the semaphore's order guarantees.
+ *
+ * Latency samples are grouped in windows of (at least) {@code limit} samples.
+ * At the end of each window, its average latency is compared with a baseline latency:
+ * - if it is more than {@code tolerance} times higher, the limit is multiplied by {@code backoffRatio};
+ * - otherwise, if the limit was fully used during the window, the limit is incremented by one.
+ * The baseline follows lower window averages immediately and higher ones slowly, by {@code BASELINE_DRIFT}
+ * of the difference per window, so that a lasting change in the latency eventually becomes the new baseline
+ * instead of keeping the limit at the minimum forever.
+ *
+ * Samples are accumulated without the monitor, which is only acquired to close a window.
+ *
+ * Increasing the limit releases units into the semaphore.
+ * Decreasing it takes back the available units and swallows the missing ones when they are released,
+ * so the connections already admitted are never interrupted.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final int MIN_WINDOW_SIZE = 16;
+    private static final double BASELINE_DRIFT = 0.1;
+
+    private final Lock monitor = new ReentrantLock();
+    private final NArySemaphore semaphore;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+
+    private int limit;
+    private int inUse = 0;
+    // units to swallow on release, because the limit was decreased while they were in use
+    private int pendingShrink = 0;
+
+    // current window, where the samples are accumulated without holding the monitor
+    private final AtomicInteger windowSamples = new AtomicInteger();
+    private final LongAdder windowLatencySum = new LongAdder();
+    private volatile int windowSize;
+    private int windowMaxInUse = 0;
+    private long baselineAverage = Long.MAX_VALUE;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 2.0, 0.75);
+    }
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                    double tolerance, double backoffRatio) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (tolerance < 1.0 || backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+            throw new IllegalArgumentException("tolerance must be >= 1 and backoffRatio must be in ]0, 1[");
+        }
+        this.semaphore = new NArySemaphoreWithFifo3(initialLimit);
+        this.limit = initialLimit;
+        this.windowSize = Math.max(MIN_WINDOW_SIZE, initialLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+    }
+
+    public boolean acquire(long timeoutInMs) throws InterruptedException {
+        if (!semaphore.acquire(1, timeoutInMs)) {
+            return false;
+        }
+        monitor.lock();
+        try {
+            inUse += 1;
+            windowMaxInUse = Math.max(windowMaxInUse, inUse);
+            return true;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Acquires a permit only if one is available, without waiting, e.g., on an accept loop.
+     */
+    public boolean tryAcquire() {
+        try {
+            return acquire(0);
+        } catch (InterruptedException e) {
+            // not thrown with a zero timeout, since there is no wait
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        monitor.lock();
+        try {
+            inUse -= 1;
+            if (pendingShrink > 0) {
+                pendingShrink -= 1;
+                return;
+            }
+        } finally {
+            monitor.unlock();
+        }
+        semaphore.release(1);
+    }
+
+    /**
+     * Records the latency of an operation done while holding a permit, e.g. echoing a line.
+     */
+    public void onSample(long latencyNanos) {
+        windowLatencySum.add(latencyNanos);
+        if (windowSamples.incrementAndGet() < windowSize) {
+            return;
+        }
+        monitor.lock();
+        try {
+            // another thread may have closed the window meanwhile
+            if (windowSamples.get() >= windowSize) {
+                closeWindow();
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    public int getLimit() {
+        monitor.lock();
+        try {
+            return limit;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    public int getInUse() {
+        monitor.lock();
+        try {
+            return inUse;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    // called with the monitor held
+    private void closeWindow() {
+        // samples added concurrently with the reset may be counted in the next window, which is fine for an average
+        int samples = windowSamples.getAndSet(0);
+        long average = windowLatencySum.sumThenReset() / samples;
+        if (baselineAverage == Long.MAX_VALUE) {
+            baselineAverage = average;
+        }
+        if (average > baselineAverage * tolerance) {
+            decreaseTo(Math.max(minLimit, (int) (limit * backoffRatio)));
+        } else if (windowMaxInUse >= limit && limit < maxLimit) {
+            increase();
+        }
+        baselineAverage = average < baselineAverage
+                ? average
+                : baselineAverage + (long) ((average - baselineAverage) * BASELINE_DRIFT);
+        windowMaxInUse = inUse;
+        windowSize = Math.max(MIN_WINDOW_SIZE, limit);
+    }
+
+    // called with the monitor held
+    private void increase() {
+        limit += 1;
+        if (pendingShrink > 0) {
+            pendingShrink -= 1;
+        } else {
+            semaphore.release(1);
+        }
+    }
+
+    // called with the monitor held
+    private void decreaseTo(int newLimit) {
+        int toRemove = limit - newLimit;
+        limit = newLimit;
+        // takes back the units that are available, without waiting
+        while (toRemove > 0 && tryAcquireWithoutWaiting()) {
+            toRemove -= 1;
+        }
+        pendingShrink += toRemove;
+    }
+
+    private boolean tryAcquireWithoutWaiting() {
+        try {
+            return semaphore.acquire(1, 0);
+        } catch (InterruptedException e) {
+            // does not happen, since there is no waiting, but re-arms the interruption status anyway
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
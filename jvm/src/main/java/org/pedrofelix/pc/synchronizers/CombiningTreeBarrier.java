@@ -0,0 +1,230 @@
+package org.pedrofelix.pc.synchronizers;
+
+import org.pedrofelix.pc.utils.Timeouts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cyclic barrier where arrivals are combined through a tree of counters.
+ * Each arrival increments a leaf counter, and only the arrival that fills a node
+ * moves up to increment its parent, so no single counter is updated by all the parties.
+ * Only the arrival that fills the root, i.e. the last one of the phase, acquires the monitor,
+ * to start the next phase and signal the waiting threads.
+ * A timeout or an interrupt while waiting leaves the barrier permanently broken.
+ */
+public class CombiningTreeBarrier {
+
+    private static final int DEFAULT_FAN_IN = 4;
+
+    private static class Node {
+        public final Node parent;
+        public final int expected;
+        public final AtomicInteger count = new AtomicInteger(0);
+
+        public Node(Node parent, int expected) {
+            this.parent = parent;
+            this.expected = expected;
+        }
+    }
+
+    private final Lock monitor = new ReentrantLock();
+    private final Condition phaseCompleted = monitor.newCondition();
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Node[] leaves;
+    private final Runnable barrierAction;
+
+    // Written while holding the monitor, read without it on the fast-paths
+    private volatile int phase = 0;
+    private volatile boolean isBroken = false;
+
+    public CombiningTreeBarrier(int parties) {
+        this(parties, DEFAULT_FAN_IN, null);
+    }
+
+    public CombiningTreeBarrier(int parties, int fanIn, Runnable barrierAction) {
+        if (parties <= 0) {
+            throw new IllegalArgumentException("parties must be > 0");
+        }
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("fanIn must be >= 2");
+        }
+        this.barrierAction = barrierAction;
+        this.leaves = buildTree(parties, fanIn);
+    }
+
+    /**
+     * Arrives at the barrier and waits until all the parties arrive.
+     *
+     * @param timeoutInMs the maximum time to wait.
+     * @return {@code true} if all parties arrived, {@code false} if the timeout was reached first.
+     * @throws BrokenBarrierException if the barrier was broken by another party.
+     * @throws InterruptedException   if interrupted while waiting.
+     */
+    public boolean await(long timeoutInMs) throws InterruptedException, BrokenBarrierException {
+
+        if (isBroken) {
+            throw new BrokenBarrierException();
+        }
+        int myPhase = phase;
+
+        if (arrive()) {
+            completePhase();
+            return true;
+        }
+
+        // fast-path, without acquiring the monitor
+        if (phase != myPhase) {
+            return true;
+        }
+
+        monitor.lock();
+        try {
+
+            if (phase != myPhase) {
+                return true;
+            }
+            if (isBroken) {
+                throw new BrokenBarrierException();
+            }
+
+            if (Timeouts.noWait(timeoutInMs)) {
+                breakBarrier();
+                return false;
+            }
+
+            // wait-path
+            long deadline = Timeouts.deadlineFor(timeoutInMs);
+            long remaining = Timeouts.remainingUntil(deadline);
+            while (true) {
+                try {
+                    phaseCompleted.await(remaining, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    if (phase != myPhase) {
+                        Thread.currentThread().interrupt();
+                        return true;
+                    }
+                    breakBarrier();
+                    throw e;
+                }
+
+                if (phase != myPhase) {
+                    return true;
+                }
+                if (isBroken) {
+                    throw new BrokenBarrierException();
+                }
+
+                remaining = Timeouts.remainingUntil(deadline);
+                if (Timeouts.isTimeout(remaining)) {
+                    breakBarrier();
+                    return false;
+                }
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    public boolean isBroken() {
+        return isBroken;
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Increments a non-full leaf, starting on a leaf selected by the current thread, and
+     * propagates the increment upwards while the incremented node becomes full.
+     *
+     * @return {@code true} if the root became full, i.e., this was the last arrival of the phase.
+     */
+    private boolean arrive() {
+        int start = (int) (Thread.currentThread().getId() % leaves.length);
+        for (int i = 0; i < leaves.length; ++i) {
+            Node leaf = leaves[(start + i) % leaves.length];
+            while (true) {
+                int observed = leaf.count.get();
+                if (observed == leaf.expected) {
+                    // leaf is full, try the next one
+                    break;
+                }
+                if (leaf.count.compareAndSet(observed, observed + 1)) {
+                    if (observed + 1 < leaf.expected) {
+                        return false;
+                    }
+                    Node node = leaf.parent;
+                    while (node != null) {
+                        if (node.count.incrementAndGet() < node.expected) {
+                            return false;
+                        }
+                        node = node.parent;
+                    }
+                    return true;
+                }
+            }
+        }
+        throw new IllegalStateException("more arrivals than parties");
+    }
+
+    private void completePhase() {
+        // No other party can arrive before the phase changes, so the counters can be reset without races
+        for (Node node : nodes) {
+            node.count.set(0);
+        }
+        if (barrierAction != null) {
+            barrierAction.run();
+        }
+        monitor.lock();
+        try {
+            phase += 1;
+            phaseCompleted.signalAll();
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    // must be called while holding the monitor
+    private void breakBarrier() {
+        isBroken = true;
+        phaseCompleted.signalAll();
+    }
+
+    private Node[] buildTree(int parties, int fanIn) {
+        // computes the number of nodes on each level, from the leaves up to the root
+        List<Integer> levelSizes = new ArrayList<>();
+        int size = (parties + fanIn - 1) / fanIn;
+        levelSizes.add(size);
+        while (size > 1) {
+            size = (size + fanIn - 1) / fanIn;
+            levelSizes.add(size);
+        }
+
+        // creates the nodes from the root down to the leaves
+        Node[] parents = null;
+        Node[] level = null;
+        for (int l = levelSizes.size() - 1; l >= 0; --l) {
+            int levelSize = levelSizes.get(l);
+            int childrenCount = l == 0 ? parties : levelSizes.get(l - 1);
+            level = new Node[levelSize];
+            for (int i = 0; i < levelSize; ++i) {
+                // leaves split the parties evenly, inner nodes expect one increment per child node
+                int expected = l == 0
+                        ? childrenCount / levelSize + (i < childrenCount % levelSize ? 1 : 0)
+                        : Math.min(fanIn, childrenCount - i * fanIn);
+                level[i] = new Node(parents == null ? null : parents[i / fanIn], expected);
+                nodes.add(level[i]);
+            }
+            parents = level;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,135 @@
+package org.pedrofelix.pc.synchronizers;
+
+import org.pedrofelix.pc.utils.Timeouts;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count down latch where the count is split between multiple stripes,
+ * so that concurrent count downs mostly update distinct memory locations.
+ * Only the count down that empties the last stripe acquires the monitor,
+ * to open the latch and signal the waiting threads.
+ */
+public class StripedCountDownLatch {
+
+    // Distance, in ints, between two consecutive stripes, so that each one uses its own cache line.
+    private static final int STRIDE = 16;
+
+    private final Lock monitor = new ReentrantLock();
+    private final Condition isOpenCondition = monitor.newCondition();
+
+    private final int nOfStripes;
+    private final AtomicIntegerArray stripes;
+    private final AtomicInteger nonEmptyStripes;
+
+    // Written while holding the monitor, read without it on the fast-paths
+    private volatile boolean isOpen;
+
+    public StripedCountDownLatch(int initialCount) {
+        this(initialCount, Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedCountDownLatch(int initialCount, int nOfStripes) {
+        if (initialCount < 0) {
+            throw new IllegalArgumentException("initialCount must be >= 0");
+        }
+        if (nOfStripes <= 0) {
+            throw new IllegalArgumentException("nOfStripes must be > 0");
+        }
+        this.nOfStripes = Math.max(1, Math.min(nOfStripes, initialCount));
+        this.stripes = new AtomicIntegerArray(this.nOfStripes * STRIDE);
+        for (int i = 0; i < this.nOfStripes; ++i) {
+            int stripeCount = initialCount / this.nOfStripes + (i < initialCount % this.nOfStripes ? 1 : 0);
+            stripes.set(i * STRIDE, stripeCount);
+        }
+        this.nonEmptyStripes = new AtomicInteger(initialCount == 0 ? 0 : this.nOfStripes);
+        this.isOpen = initialCount == 0;
+    }
+
+    public void countDown() {
+        int start = (int) (Thread.currentThread().getId() % nOfStripes);
+        for (int i = 0; i < nOfStripes; ++i) {
+            int index = ((start + i) % nOfStripes) * STRIDE;
+            while (true) {
+                int observed = stripes.get(index);
+                if (observed == 0) {
+                    // stripe is empty, try the next one
+                    break;
+                }
+                if (stripes.compareAndSet(index, observed, observed - 1)) {
+                    if (observed == 1 && nonEmptyStripes.decrementAndGet() == 0) {
+                        open();
+                    }
+                    return;
+                }
+            }
+        }
+        // all stripes are empty, so the latch is already open (or about to be)
+    }
+
+    public boolean await(long timeoutInMs) throws InterruptedException {
+
+        // fast-path, without acquiring the monitor
+        if (isOpen) {
+            return true;
+        }
+
+        monitor.lock();
+        try {
+
+            if (isOpen) {
+                return true;
+            }
+
+            if (Timeouts.noWait(timeoutInMs)) {
+                return false;
+            }
+
+            // wait-path
+            long deadline = Timeouts.deadlineFor(timeoutInMs);
+            long remaining = Timeouts.remainingUntil(deadline);
+            while (true) {
+
+                // No need to handle exceptions because opening is a permanent state change
+                isOpenCondition.await(remaining, TimeUnit.MILLISECONDS);
+
+                if (isOpen) {
+                    return true;
+                }
+
+                remaining = Timeouts.remainingUntil(deadline);
+                if (Timeouts.isTimeout(remaining)) {
+                    return false;
+                }
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Returns the current count, which is only a snapshot if there are concurrent count downs.
+     */
+    public int getCount() {
+        int count = 0;
+        for (int i = 0; i < nOfStripes; ++i) {
+            count += stripes.get(i * STRIDE);
+        }
+        return count;
+    }
+
+    private void open() {
+        monitor.lock();
+        try {
+            isOpen = true;
+            isOpenCondition.signalAll();
+        } finally {
+            monitor.unlock();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.pedrofelix.pc.utils;
+
+import org.pedrofelix.pc.lockfree.BoundedMpscQueue;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logger that moves the actual logging out of the calling thread.
+ * Log entries are added to a bounded lock-free queue and written into the target {@link Logger}
+ * by a single background thread. When the queue is full the entry is dropped and counted,
+ * so the calling thread never blocks.
+ * Optionally, entries are sampled, i.e., only a maximum number of entries per second is accepted
+ * for each message type, where the message type is the format string.
+ */
+public class AsyncLogger {
+
+    public enum Mode {
+        // logs on the calling thread, i.e., the same as using the target logger directly
+        SYNC,
+        // logs on the background thread
+        ASYNC,
+        // logs on the background thread, with a maximum rate per message type
+        SAMPLED,
+        // does not log
+        OFF
+    }
+
+    private static final long DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long DROP_REPORT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SAMPLING_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static class Entry {
+        public final String format;
+        public final Object arg;
+
+        public Entry(String format, Object arg) {
+            this.format = format;
+            this.arg = arg;
+        }
+    }
+
+    /**
+     * The current window and the number of entries accepted in it, packed into a single long,
+     * with the window number in the upper 32 bits and the count in the lower 32 bits,
+     * so that starting a new window and counting the first entry in it is a single CAS.
+     */
+    private static class RateSampler {
+        public final long origin = System.nanoTime();
+        public final AtomicLong state = new AtomicLong(0);
+    }
+
+    private final Logger target;
+    private final Mode mode;
+    private final int maxPerSecondPerMessageType;
+    private final BoundedMpscQueue<Entry> queue;
+    private final ConcurrentHashMap<String, RateSampler> samplers = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+
+    public AsyncLogger(Logger target, Mode mode, int capacity, int maxPerSecondPerMessageType) {
+        this.target = target;
+        this.mode = mode;
+        this.maxPerSecondPerMessageType = maxPerSecondPerMessageType;
+        if (mode == Mode.ASYNC || mode == Mode.SAMPLED) {
+            queue = new BoundedMpscQueue<>(capacity);
+            var th = new Thread(this::drainLoop, "async-logger-" + target.getName());
+            th.setDaemon(true);
+            th.start();
+        } else {
+            queue = null;
+        }
+    }
+
+    public void info(String format, Object arg) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        if (mode == Mode.SYNC) {
+            target.info(format, arg);
+            return;
+        }
+        if (mode == Mode.SAMPLED && !sample(format)) {
+            sampledOut.increment();
+            return;
+        }
+        if (!queue.offer(new Entry(format, arg))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    private boolean sample(String format) {
+        var sampler = samplers.get(format);
+        if (sampler == null) {
+            sampler = samplers.computeIfAbsent(format, ignore -> new RateSampler());
+        }
+        long window = (System.nanoTime() - sampler.origin) / SAMPLING_WINDOW_NANOS;
+        while (true) {
+            long state = sampler.state.get();
+            long stateWindow = state >>> 32;
+            long count = state & 0xFFFF_FFFFL;
+            long newState;
+            if (stateWindow >= window) {
+                // a thread that read the clock later may have already started the next window
+                if (count >= maxPerSecondPerMessageType) {
+                    return false;
+                }
+                newState = state + 1;
+            } else {
+                newState = (window << 32) | 1;
+            }
+            if (sampler.state.compareAndSet(state, newState)) {
+                return true;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        long reportedDrops = 0;
+        long lastReport = System.nanoTime();
+        while (true) {
+            Entry entry = queue.poll();
+            if (entry != null) {
+                target.info(entry.format, entry.arg);
+            }
+            long now = System.nanoTime();
+            if (now - lastReport >= DROP_REPORT_PERIOD_NANOS) {
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    target.warn("{} log entries dropped because the queue was full", drops - reportedDrops);
+                    reportedDrops = drops;
+                }
+                lastReport = now;
+            }
+            if (entry == null) {
+                // nothing to log, so wait a bit instead of requiring producers to signal this thread
+                LockSupport.parkNanos(DRAIN_PARK_NANOS);
+            }
+        }
+    }
+}
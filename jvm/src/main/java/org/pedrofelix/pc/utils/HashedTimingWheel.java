@@ -0,0 +1,269 @@
+package org.pedrofelix.pc.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timer for a large number of timeouts, with O(1) scheduling and cancellation, in the style of Netty's
+ * HashedWheelTimer.
+ * Time is divided in ticks and the timeouts are hashed into a circular array of buckets (the wheel)
+ * by their deadline tick. A single worker thread advances one bucket per tick and runs the timeouts
+ * of that bucket that are due, i.e., that do not need more rounds of the wheel.
+ *
+ * Scheduling and cancellation only add to lock-free queues, which the worker thread drains on each tick,
+ * so the buckets are only accessed by the worker thread.
+ * The timeouts are precise to a tick, and their tasks run on the worker thread, so they must be short.
+ */
+public class HashedTimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    // maximum number of new timeouts moved into the wheel on each tick, so a burst does not delay expiration
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final int ST_PENDING = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    public interface Timeout {
+        /**
+         * Cancels the timeout, returning {@code false} if it was already cancelled or expired.
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    // a field updater instead of an AtomicInteger per entry, to reduce the memory used by each pending timeout
+    private static final AtomicIntegerFieldUpdater<Entry> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    private final class Entry implements Timeout {
+        private final Runnable task;
+        // relative to startTime
+        private final long deadline;
+        private volatile int state = ST_PENDING;
+        private long remainingRounds;
+
+        // only accessed by the worker thread
+        private Bucket bucket;
+        private Entry next;
+        private Entry prev;
+
+        Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            pendingTimeouts.decrement();
+            cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+                return;
+            }
+            pendingTimeouts.decrement();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.warn("timeout task ended with exception", e);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of entries, so that cancelled entries are removed in O(1).
+     */
+    private static final class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        void add(Entry entry) {
+            entry.bucket = this;
+            if (head == null) {
+                head = tail = entry;
+            } else {
+                tail.next = entry;
+                entry.prev = tail;
+                tail = entry;
+            }
+        }
+
+        Entry remove(Entry entry) {
+            Entry next = entry.next;
+            if (entry.prev != null) {
+                entry.prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = entry.prev;
+            } else {
+                tail = entry.prev;
+            }
+            entry.prev = entry.next = null;
+            entry.bucket = null;
+            return next;
+        }
+
+        void expire(long deadline) {
+            Entry entry = head;
+            while (entry != null) {
+                if (entry.isCancelled()) {
+                    entry = remove(entry);
+                } else if (entry.remainingRounds <= 0 && entry.deadline <= deadline) {
+                    Entry next = remove(entry);
+                    entry.expire();
+                    entry = next;
+                } else {
+                    entry.remainingRounds -= 1;
+                    entry = entry.next;
+                }
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+    private final LongAdder pendingTimeouts = new LongAdder();
+    private final Thread worker;
+    private volatile boolean isStopped = false;
+
+    // only accessed by the worker thread
+    private long tick = 0;
+
+    public HashedTimingWheel(long tickDurationInMs, int ticksPerWheel) {
+        if (tickDurationInMs <= 0) {
+            throw new IllegalArgumentException("tickDurationInMs must be > 0");
+        }
+        if (ticksPerWheel <= 0 || Integer.bitCount(ticksPerWheel) != 1) {
+            throw new IllegalArgumentException("ticksPerWheel must be a power of two");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDurationInMs);
+        this.wheel = new Bucket[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; ++i) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = ticksPerWheel - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::workerLoop, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delayInMs) {
+        if (isStopped) {
+            throw new IllegalStateException("timing wheel is stopped");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayInMs)) - startTime;
+        var entry = new Entry(task, deadline);
+        pendingTimeouts.increment();
+        pending.add(entry);
+        return entry;
+    }
+
+    /**
+     * Returns the number of timeouts that were neither cancelled nor expired.
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.sum();
+    }
+
+    /**
+     * Stops the worker thread. The pending timeouts will not expire.
+     */
+    public void stop() throws InterruptedException {
+        isStopped = true;
+        worker.interrupt();
+        worker.join();
+    }
+
+    private void workerLoop() {
+        while (!isStopped) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                return;
+            }
+            removeCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick += 1;
+        }
+    }
+
+    /**
+     * Waits until the end of the current tick and returns the current time relative to startTime,
+     * or -1 if interrupted.
+     */
+    private long waitForNextTick() {
+        long tickEnd = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long remaining = tickEnd - now;
+            if (remaining <= 0) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                if (isStopped) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Entry entry;
+        while ((entry = cancelled.poll()) != null) {
+            if (entry.bucket != null) {
+                entry.bucket.remove(entry);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; ++i) {
+            Entry entry = pending.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.isCancelled()) {
+                continue;
+            }
+            long deadlineTick = entry.deadline / tickNanos;
+            entry.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // timeouts already due go into the current bucket
+            long bucketTick = Math.max(deadlineTick, tick);
+            wheel[(int) (bucketTick & mask)].add(entry);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.pedrofelix.pc.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line arguments in the {@code --name=value} form, used by the configurable servers and load generators.
+ */
+public class NamedArgs {
+
+    private final Map<String, String> values;
+
+    private NamedArgs(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * @throws IllegalArgumentException if an argument is not in the {@code --name=value} form.
+     */
+    public static NamedArgs parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException(String.format("invalid argument '%s', expected --name=value", arg));
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new NamedArgs(values);
+    }
+
+    public String stringOrDefault(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int intOrDefault(String name, int defaultValue) {
+        var value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long longOrDefault(String name, long defaultValue) {
+        var value = values.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Returns the enum constant with the value as name, ignoring case.
+     */
+    public <E extends Enum<E>> E enumOrDefault(String name, E defaultValue) {
+        var value = values.get(name);
+        return value == null ? defaultValue : Enum.valueOf(defaultValue.getDeclaringClass(), value.toUpperCase());
+    }
+}
@@ -0,0 +1,51 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryFramesTests {
+
+    @Test
+    public void finds_the_end_of_the_complete_frames() throws IOException {
+        var buffer = ByteBuffer.allocate(64);
+        putFrame(buffer, 1, 3);
+        putFrame(buffer, 2, 0);
+        int completeEnd = buffer.position();
+        // incomplete frame, with only part of the payload
+        buffer.putInt(10).putInt(3).put((byte) 'a');
+        buffer.flip();
+
+        assertEquals(completeEnd, BinaryFrames.completeFramesEnd(buffer, 1024));
+        assertEquals(2, BinaryFrames.countFrames(buffer, 0, completeEnd));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void incomplete_header_is_not_a_frame() throws IOException {
+        var buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 0).put((byte) 0).put((byte) 0);
+        buffer.flip();
+
+        assertEquals(0, BinaryFrames.completeFramesEnd(buffer, 1024));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejects_frames_above_the_maximum_length() throws IOException {
+        var buffer = ByteBuffer.allocate(64);
+        buffer.putInt(2048).putInt(1);
+        buffer.flip();
+
+        BinaryFrames.completeFramesEnd(buffer, 1024);
+    }
+
+    private static void putFrame(ByteBuffer buffer, int requestId, int payloadLength) {
+        buffer.putInt(payloadLength).putInt(requestId);
+        for (int i = 0; i < payloadLength; ++i) {
+            buffer.put((byte) ('a' + i));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ByteEchoEngineTests {
+
+    private static final String NL = System.lineSeparator();
+
+    private static String echo(String input, int bufferSize) throws IOException {
+        return echo(input, bufferSize, ByteEchoEngine.FlushPolicy.perLine(), new AtomicInteger());
+    }
+
+    private static String echo(String input, int bufferSize, ByteEchoEngine.FlushPolicy flushPolicy,
+                               AtomicInteger writes) throws IOException {
+        var inputStream = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+        var outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.incrementAndGet();
+                super.write(b, off, len);
+            }
+        };
+        new ByteEchoEngine(inputStream, outputStream, StandardCharsets.UTF_8, bufferSize, 1024, flushPolicy,
+                new EchoMetrics()).run(7);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void echoes_lines_with_the_same_protocol_as_the_reader_based_servers() throws IOException {
+        assertEquals(
+                "Hi! You are client number 7" + NL + "0: HELLO" + NL + "1: WORLD 42" + NL + "2: " + NL + "Bye." + NL,
+                echo("hello\nworld 42\r\n\nexit\nignored\n", 4));
+    }
+
+    @Test
+    public void falls_back_to_unicode_for_non_ascii_lines() throws IOException {
+        assertEquals(
+                "Hi! You are client number 7" + NL + "0: OL\u00C1" + NL + "1: ABC" + NL + "Bye." + NL,
+                echo("ol\u00e1\nabc", 16));
+    }
+
+    @Test
+    public void coalesces_replies_to_pipelined_lines() throws IOException {
+        var perLineWrites = new AtomicInteger();
+        var coalescingWrites = new AtomicInteger();
+        String input = "a\nb\nc\nd\nexit\n";
+
+        String perLine = echo(input, 64, ByteEchoEngine.FlushPolicy.perLine(), perLineWrites);
+        String coalesced = echo(input, 64, ByteEchoEngine.FlushPolicy.coalescing(1024, 1000), coalescingWrites);
+
+        assertEquals(perLine, coalesced);
+        // greeting, one per line, and bye
+        assertEquals(6, perLineWrites.get());
+        // greeting, and then all the replies and bye, because all lines are available on the first read
+        assertEquals(2, coalescingWrites.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejects_lines_longer_than_the_maximum() throws IOException {
+        echo("a".repeat(2048) + "\n", 16);
+    }
+
+    @Test
+    public void answers_stats_line_with_the_connection_counters() throws IOException {
+        var metrics = new EchoMetrics();
+        byte[] input = "a\nbb\nstats\nexit\n".getBytes(StandardCharsets.US_ASCII);
+        var inputStream = new ByteArrayInputStream(input);
+        var outputStream = new ByteArrayOutputStream();
+        new ByteEchoEngine(inputStream, outputStream, StandardCharsets.US_ASCII, 64, 1024,
+                ByteEchoEngine.FlushPolicy.perLine(), metrics).run(3);
+
+        String[] lines = outputStream.toString(StandardCharsets.US_ASCII).split(NL, -1);
+        assertTrue(lines[3].startsWith("stats: "));
+        assertTrue(lines[3].contains(" lines=2 "));
+        assertTrue(lines[4].startsWith("client 3: lines=2 bytesIn=" + input.length + " "));
+        assertEquals("", lines[5]);
+        assertEquals("Bye.", lines[6]);
+        // the connection counters are added to the totals when it ends
+        assertEquals(2, metrics.getLines());
+        assertEquals(input.length, metrics.getBytesIn());
+        assertEquals(outputStream.size(), metrics.getBytesOut());
+    }
+}
@@ -0,0 +1,59 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineDecoderTests {
+
+    @Test
+    public void decodes_lines_split_across_buffers_and_removes_the_carriage_return() throws IOException {
+        var decoder = new LineDecoder(4, 1024);
+
+        assertFalse(decoder.decode(bufferOf("hel")));
+        var buffer = bufferOf("lo world\r\nbye\n");
+        assertTrue(decoder.decode(buffer));
+        assertEquals("hello world", decoder.takeLine(StandardCharsets.US_ASCII));
+        assertTrue(decoder.decode(buffer));
+        assertEquals("bye", decoder.takeLine(StandardCharsets.US_ASCII));
+        assertFalse(decoder.decode(buffer));
+    }
+
+    @Test
+    public void empty_lines_are_lines() throws IOException {
+        var decoder = new LineDecoder(16, 1024);
+        var buffer = bufferOf("\r\n\n");
+
+        assertTrue(decoder.decode(buffer));
+        assertEquals("", decoder.takeLine(StandardCharsets.US_ASCII));
+        assertTrue(decoder.decode(buffer));
+        assertEquals("", decoder.takeLine(StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejects_lines_above_the_maximum_length() throws IOException {
+        var decoder = new LineDecoder(4, 8);
+        decoder.decode(bufferOf("123456789"));
+    }
+
+    @Test
+    public void incomplete_line_can_be_taken_as_the_last_line() throws IOException {
+        var decoder = new LineDecoder(16, 1024);
+
+        assertFalse(decoder.finishLine());
+        assertFalse(decoder.decode(bufferOf("last")));
+        assertTrue(decoder.finishLine());
+        assertEquals("last", decoder.takeLine(StandardCharsets.US_ASCII));
+        assertFalse(decoder.finishLine());
+    }
+
+    private static ByteBuffer bufferOf(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
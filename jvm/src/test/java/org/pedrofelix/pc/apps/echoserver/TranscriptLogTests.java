@@ -0,0 +1,102 @@
+package org.pedrofelix.pc.apps.echoserver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pedrofelix.pc.utils.TestHelper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TranscriptLogTests {
+
+    private static final int N_OF_THREADS = 8;
+    private static final int N_OF_RECORDS = 5_000;
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final Duration TEST_DURATION = Duration.ofSeconds(10);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void records_from_multiple_threads_are_read_back_across_segments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        var log = new TranscriptLog(directory, SEGMENT_SIZE);
+        TestHelper helper = new TestHelper(TEST_DURATION);
+
+        helper.createAndStartMultiple(N_OF_THREADS, (index, isDone) -> {
+            for (int i = 0; i < N_OF_RECORDS; ++i) {
+                byte[] line = line(index, i);
+                assertTrue(log.record(index, i, line, 0, line.length));
+            }
+        });
+        helper.join();
+        log.close();
+
+        Set<Long> seen = new HashSet<>();
+        int segmentIndex = 0;
+        Path segment;
+        while (Files.exists(segment = TranscriptLog.segmentPath(directory, segmentIndex++))) {
+            TranscriptReader.readSegment(segment, (clientNo, lineNo, timestamp, bytes) -> {
+                assertEquals(new String(line(clientNo, lineNo), StandardCharsets.US_ASCII),
+                        new String(bytes, StandardCharsets.US_ASCII));
+                assertTrue(seen.add((long) clientNo << 32 | lineNo));
+            });
+        }
+        assertTrue(segmentIndex > 3);
+        assertEquals(N_OF_THREADS * N_OF_RECORDS, seen.size());
+        assertEquals(0, log.getDroppedCount());
+    }
+
+    @Test
+    public void new_log_does_not_overwrite_existing_segments() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        byte[] line = line(1, 1);
+        var first = new TranscriptLog(directory, SEGMENT_SIZE);
+        first.record(1, 1, line, 0, line.length);
+        first.close();
+
+        var second = new TranscriptLog(directory, SEGMENT_SIZE);
+        second.record(2, 2, line, 0, line.length);
+        second.close();
+
+        assertEquals(1, TranscriptReader.readSegment(TranscriptLog.segmentPath(directory, 0), (c, l, t, b) -> {
+            assertEquals(1, c);
+        }));
+        assertTrue(Files.exists(TranscriptLog.segmentPath(directory, 2)));
+    }
+
+    @Test
+    public void drops_records_larger_than_a_segment() throws IOException {
+        var log = new TranscriptLog(folder.getRoot().toPath(), SEGMENT_SIZE);
+        byte[] line = new byte[SEGMENT_SIZE];
+
+        assertFalse(log.record(1, 1, line, 0, line.length));
+        assertEquals(1, log.getDroppedCount());
+        log.close();
+    }
+
+    @Test
+    public void drops_records_after_close() throws IOException {
+        var log = new TranscriptLog(folder.getRoot().toPath(), SEGMENT_SIZE);
+        byte[] line = line(1, 1);
+
+        assertTrue(log.record(1, 1, line, 0, line.length));
+        log.close();
+        assertFalse(log.record(1, 2, line, 0, line.length));
+        assertEquals(1, log.getDroppedCount());
+    }
+
+    private static byte[] line(int clientNo, int lineNo) {
+        return String.format("client %d says line %d", clientNo, lineNo).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,54 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTests {
+
+    private static void assertWithinRelativeError(long expected, long actual) {
+        assertTrue(String.format("expected %d but was %d", expected, actual),
+                Math.abs(expected - actual) <= expected / 100 + 1);
+    }
+
+    @Test
+    public void percentiles_are_within_the_relative_error() {
+        var histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; ++value) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(100_000, histogram.getTotalCount());
+        assertWithinRelativeError(50_000_000, histogram.getValueAtPercentile(50));
+        assertWithinRelativeError(99_000_000, histogram.getValueAtPercentile(99));
+        assertWithinRelativeError(99_900_000, histogram.getValueAtPercentile(99.9));
+        assertEquals(100_000_000, histogram.getMax());
+    }
+
+    @Test
+    public void corrected_recording_adds_the_omitted_samples() {
+        var histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; ++i) {
+            histogram.recordCorrected(1_000, 1_000);
+        }
+        // a stall of 100 intervals hides 99 requests that would have been sent meanwhile
+        histogram.recordCorrected(100_000, 1_000);
+
+        assertEquals(199, histogram.getTotalCount());
+        assertTrue(histogram.getValueAtPercentile(75) > 1_000);
+    }
+
+    @Test
+    public void histograms_can_be_added() {
+        var h1 = new LatencyHistogram();
+        var h2 = new LatencyHistogram();
+        h1.record(10);
+        h2.record(1_000_000);
+
+        h1.add(h2);
+        assertEquals(2, h1.getTotalCount());
+        assertEquals(10, h1.getValueAtPercentile(50));
+        assertWithinRelativeError(1_000_000, h1.getValueAtPercentile(100));
+    }
+}
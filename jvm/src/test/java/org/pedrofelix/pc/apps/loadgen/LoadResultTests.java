@@ -0,0 +1,24 @@
+package org.pedrofelix.pc.apps.loadgen;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class LoadResultTests {
+
+    @Test
+    public void labels_are_escaped_in_json() {
+        var config = LoadGeneratorConfig.fromArgs(new String[]{"--label=a \"quoted\" C:\\dir\tname"});
+        var histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        var json = new LoadResult(config, 1, 1, 0, histogram).toJson();
+
+        assertTrue(json, json.startsWith("{\"label\":\"a \\\"quoted\\\" C:\\\\dir\\u0009name\","));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rates_above_one_request_per_nanosecond_per_connection_are_rejected() {
+        LoadGeneratorConfig.fromArgs(new String[]{"--mode=open", "--connections=2", "--rate=2000000001"});
+    }
+}
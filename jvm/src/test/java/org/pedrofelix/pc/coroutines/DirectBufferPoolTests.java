@@ -0,0 +1,79 @@
+package org.pedrofelix.pc.coroutines;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class DirectBufferPoolTests {
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFERS_PER_SLAB = 4;
+
+    @Test
+    public void closed_buffers_are_reused_without_allocating_slabs() {
+        var pool = new DirectBufferPool(BUFFER_SIZE, BUFFERS_PER_SLAB);
+
+        for (int i = 0; i < 100; ++i) {
+            var buffers = new ArrayList<DirectBufferPool.PooledBuffer>();
+            for (int j = 0; j < BUFFERS_PER_SLAB; ++j) {
+                var pooledBuffer = pool.acquire();
+                assertTrue(pooledBuffer.getBuffer().isDirect());
+                assertEquals(BUFFER_SIZE, pooledBuffer.getBuffer().remaining());
+                buffers.add(pooledBuffer);
+            }
+            buffers.forEach(DirectBufferPool.PooledBuffer::close);
+        }
+
+        assertEquals(1, pool.getSlabCount());
+        assertEquals(0, pool.getOutstandingCount());
+        assertEquals(0, pool.getLeakedCount());
+    }
+
+    @Test
+    public void buffers_of_the_same_slab_do_not_overlap() {
+        var pool = new DirectBufferPool(BUFFER_SIZE, BUFFERS_PER_SLAB);
+        var buffers = new ArrayList<DirectBufferPool.PooledBuffer>();
+        for (int i = 0; i < BUFFERS_PER_SLAB; ++i) {
+            var pooledBuffer = pool.acquire();
+            var buffer = pooledBuffer.getBuffer();
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) i);
+            }
+            buffers.add(pooledBuffer);
+        }
+
+        for (int i = 0; i < BUFFERS_PER_SLAB; ++i) {
+            var buffer = buffers.get(i).getBuffer();
+            for (int j = 0; j < BUFFER_SIZE; ++j) {
+                assertEquals((byte) i, buffer.get(j));
+            }
+            buffers.get(i).close();
+        }
+        assertEquals(1, pool.getSlabCount());
+    }
+
+    @Test
+    public void unreachable_buffer_is_reported_as_leak_and_not_reused() throws InterruptedException {
+        var pool = new DirectBufferPool(BUFFER_SIZE, 1);
+        var leakedBuffer = pool.acquire().getBuffer();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.getLeakedCount() == 0 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, pool.getLeakedCount());
+        assertEquals(0, pool.getOutstandingCount());
+        // the leaked buffer may still be in use, so the next one comes from a new slab
+        var pooledBuffer = pool.acquire();
+        assertNotSame(leakedBuffer, pooledBuffer.getBuffer());
+        assertEquals(2, pool.getSlabCount());
+        pooledBuffer.close();
+    }
+}
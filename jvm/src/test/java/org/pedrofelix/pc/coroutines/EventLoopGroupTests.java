@@ -0,0 +1,62 @@
+package org.pedrofelix.pc.coroutines;
+
+import kotlinx.coroutines.CompletableJob;
+import kotlinx.coroutines.JobKt;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EventLoopGroupTests {
+
+    @Test
+    public void round_robin_selects_the_loops_in_order() {
+        try (var group = new EventLoopGroup(3, EventLoopGroup.Balancing.ROUND_ROBIN)) {
+            for (int i = 0; i < 7; ++i) {
+                var loop = group.next();
+                assertEquals(i % 3, loop.getIndex());
+                loop.register(JobKt.Job(null));
+            }
+        }
+    }
+
+    @Test
+    public void least_loaded_selects_the_loop_with_fewer_connections() {
+        try (var group = new EventLoopGroup(3, EventLoopGroup.Balancing.LEAST_LOADED)) {
+            var first = group.getLoops().get(0);
+            var jobs = new CompletableJob[3];
+            for (int i = 0; i < jobs.length; ++i) {
+                jobs[i] = JobKt.Job(null);
+                first.register(jobs[i]);
+            }
+            group.getLoops().get(1).register(JobKt.Job(null));
+
+            assertSame(group.getLoops().get(2), group.next());
+            group.getLoops().get(2).register(JobKt.Job(null));
+
+            // completed connections are no longer counted
+            for (var job : jobs) {
+                job.complete();
+            }
+            assertEquals(0, first.getConnectionCount());
+            assertSame(first, group.next());
+        }
+    }
+
+    @Test
+    public void loop_runs_everything_on_the_same_thread() throws Exception {
+        try (var group = new EventLoopGroup(2, EventLoopGroup.Balancing.ROUND_ROBIN)) {
+            var loop = group.next();
+            var firstThread = new CompletableFuture<Thread>();
+            var secondThread = new CompletableFuture<Thread>();
+            loop.getDispatcher().getExecutor().execute(() -> firstThread.complete(Thread.currentThread()));
+            loop.getDispatcher().getExecutor().execute(() -> secondThread.complete(Thread.currentThread()));
+
+            assertSame(firstThread.get(1, TimeUnit.SECONDS), secondThread.get(1, TimeUnit.SECONDS));
+            assertEquals("event-loop-0", firstThread.get().getName());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.pedrofelix.pc.coroutines;
+
+import org.junit.Test;
+import org.pedrofelix.pc.apps.echoserver.AsciiLines;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LineCodecTests {
+
+    private static final String SEPARATOR = new String(AsciiLines.LINE_SEPARATOR, StandardCharsets.US_ASCII);
+
+    @Test
+    public void decodes_lines_split_across_reads() throws IOException {
+        var decoder = new ByteBufferLineDecoder(64);
+        var buffer = emptyBuffer(128);
+
+        append(buffer, "hel");
+        assertFalse(decoder.nextLine(buffer));
+        append(buffer, "lo\r\nwor");
+        assertTrue(decoder.nextLine(buffer));
+        assertEquals("hello", lineOf(buffer, decoder));
+        assertFalse(decoder.nextLine(buffer));
+        append(buffer, "ld\nx\n");
+        assertTrue(decoder.nextLine(buffer));
+        assertEquals("world", lineOf(buffer, decoder));
+        assertTrue(decoder.nextLine(buffer));
+        assertEquals("x", lineOf(buffer, decoder));
+        assertFalse(decoder.nextLine(buffer));
+    }
+
+    @Test
+    public void rejects_lines_longer_than_the_maximum() {
+        var decoder = new ByteBufferLineDecoder(4);
+        var buffer = emptyBuffer(16);
+        append(buffer, "12345");
+        try {
+            decoder.nextLine(buffer);
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void encodes_numbered_upper_case_replies() throws IOException {
+        var decoder = new ByteBufferLineDecoder(64);
+        var encoder = new ByteBufferLineEncoder(StandardCharsets.UTF_8);
+        var input = emptyBuffer(64);
+        var output = ByteBuffer.allocateDirect(64);
+        append(input, "abc\n\u00e7\u00e3\n");
+
+        assertTrue(decoder.nextLine(input));
+        assertTrue(encoder.appendReply(output, 7, input, decoder.getLineStart(), decoder.getLineEnd()));
+        assertTrue(decoder.nextLine(input));
+        assertTrue(encoder.appendReply(output, 12, input, decoder.getLineStart(), decoder.getLineEnd()));
+
+        output.flip();
+        byte[] bytes = new byte[output.remaining()];
+        output.get(bytes);
+        assertEquals("7: ABC" + SEPARATOR + "12: \u00c7\u00c3" + SEPARATOR, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reply_is_not_appended_when_output_is_full() throws IOException {
+        var decoder = new ByteBufferLineDecoder(64);
+        var encoder = new ByteBufferLineEncoder(StandardCharsets.UTF_8);
+        var input = emptyBuffer(64);
+        var output = ByteBuffer.allocateDirect(8);
+        append(input, "abcdefgh\n");
+
+        assertTrue(decoder.nextLine(input));
+        assertFalse(encoder.appendReply(output, 0, input, decoder.getLineStart(), decoder.getLineEnd()));
+        assertEquals(0, output.position());
+    }
+
+    // empty, in read mode
+    private static ByteBuffer emptyBuffer(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).flip();
+    }
+
+    // appends to a buffer in read mode, like a read after compacting it
+    private static void append(ByteBuffer buffer, String s) {
+        buffer.compact();
+        buffer.put(s.getBytes(StandardCharsets.UTF_8));
+        buffer.flip();
+    }
+
+    private static String lineOf(ByteBuffer buffer, ByteBufferLineDecoder decoder) {
+        byte[] bytes = new byte[decoder.getLineLength()];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = buffer.get(decoder.getLineStart() + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
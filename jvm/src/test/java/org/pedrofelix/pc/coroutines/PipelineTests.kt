@@ -0,0 +1,77 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class PipelineTests {
+
+    @Test
+    fun output_order_is_preserved_with_parallel_processing_and_uneven_delays() = runBlocking {
+        val running = AtomicInteger(0)
+        val maxRunning = AtomicInteger(0)
+        val stage = PipelineStage<Int>("uneven", parallelism = 4, bufferSize = 2) { item ->
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max)
+            // later items usually complete first
+            delay(((10 - item % 10) * 5).toLong())
+            running.decrementAndGet()
+            item
+        }
+
+        val output = stage.applyTo((0 until 50).asFlow()).toList()
+
+        assertEquals((0 until 50).toList(), output)
+        assertTrue(maxRunning.get() > 1)
+        assertEquals(50, stage.metrics.processedCount)
+        assertEquals(0, stage.metrics.queueDepth)
+    }
+
+    @Test
+    fun upstream_suspends_when_the_stage_is_full() = runBlocking {
+        val parallelism = 3
+        val bufferSize = 4
+        val stage = PipelineStage<Int>("full", parallelism, bufferSize) { it }
+        val emitted = AtomicInteger(0)
+        val upstream = flow {
+            for (i in 0 until 100) {
+                emitted.incrementAndGet()
+                emit(i)
+            }
+        }
+        val neverCompleted = CompletableDeferred<Unit>()
+
+        // without buffering after the stage, so that the collector that does not return stops the handing
+        val collector = launch {
+            stage.applyTo(upstream).buffer(0).collect { neverCompleted.await() }
+        }
+        delay(200)
+
+        // one item is with the collector, the stage is full, and the emit of the next one is suspended
+        assertEquals(parallelism + bufferSize + 2, emitted.get())
+        assertEquals((parallelism + bufferSize).toLong(), stage.metrics.queueDepth)
+        collector.cancel()
+    }
+
+    @Test
+    fun queue_depth_returns_to_zero_when_the_collection_is_cancelled() = runBlocking {
+        val stage = PipelineStage<Int>("cancelled", parallelism = 4, bufferSize = 8) { item ->
+            delay(10)
+            item
+        }
+
+        val output = stage.applyTo((0 until 100).asFlow()).take(5).toList()
+
+        assertEquals(listOf(0, 1, 2, 3, 4), output)
+        assertEquals(0, stage.metrics.queueDepth)
+    }
+}
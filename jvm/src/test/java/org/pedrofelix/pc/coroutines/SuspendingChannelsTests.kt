@@ -0,0 +1,44 @@
+package org.pedrofelix.pc.coroutines
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.AsynchronousServerSocketChannel
+import java.nio.channels.SocketChannel
+
+class SuspendingChannelsTests {
+
+    @Test
+    fun cancelling_a_suspended_read_closes_the_channel() {
+        AsynchronousServerSocketChannel.open().use { serverChannel ->
+            serverChannel.bind(InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+            SocketChannel.open(serverChannel.localAddress).use { client ->
+                val socket = SuspendingSocketChannel(serverChannel.accept().get())
+                runBlocking(Dispatchers.Default) {
+                    // the client never writes, so the read stays suspended until cancelled
+                    val reader = launch(start = CoroutineStart.UNDISPATCHED) {
+                        socket.read(ByteBuffer.allocate(16))
+                    }
+                    assertTrue(reader.isActive)
+                    withTimeout(5_000) {
+                        reader.cancel()
+                        reader.join()
+                    }
+                }
+
+                assertFalse(socket.channel.isOpen)
+                // the peer sees the end of stream
+                assertEquals(-1, client.read(ByteBuffer.allocate(16)))
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.pedrofelix.pc.lockfree;
+
+import org.junit.Test;
+import org.pedrofelix.pc.utils.TestHelper;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedMpscQueueTests {
+
+    private static final int N_OF_PRODUCERS = 4;
+    private static final int N_OF_ITEMS = 100_000;
+    private static final Duration TEST_DURATION = Duration.ofSeconds(10);
+
+    @Test
+    public void offer_fails_when_full() {
+        var queue = new BoundedMpscQueue<Integer>(2);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertTrue(queue.offer(3));
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertEquals(Integer.valueOf(3), queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void all_accepted_items_are_received_in_producer_order() throws InterruptedException {
+        var queue = new BoundedMpscQueue<int[]>(64);
+        var accepted = new AtomicInteger();
+        var helper = new TestHelper(TEST_DURATION);
+
+        helper.createAndStartMultiple(N_OF_PRODUCERS, (producer, isDone) -> {
+            for (int i = 0; i < N_OF_ITEMS; ++i) {
+                while (!queue.offer(new int[]{producer, i})) {
+                    Thread.yield();
+                }
+                accepted.incrementAndGet();
+            }
+        });
+
+        int[] lastReceived = new int[N_OF_PRODUCERS];
+        Arrays.fill(lastReceived, -1);
+        int received = 0;
+        while (received < N_OF_PRODUCERS * N_OF_ITEMS) {
+            int[] item = queue.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals("items from a producer must keep their order", lastReceived[item[0]] + 1, item[1]);
+            lastReceived[item[0]] = item[1];
+            received += 1;
+        }
+        helper.join();
+        assertEquals(accepted.get(), received);
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,62 @@
+package org.pedrofelix.pc.sketches;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleMessageQueueTests {
+
+    @Test
+    public void bounded_queue_rejects_messages_when_full() throws InterruptedException {
+        var queue = new SimpleMessageQueue<Integer>(2);
+
+        assertTrue(queue.tryEnqueue(1));
+        assertTrue(queue.tryEnqueue(2));
+        assertFalse(queue.tryEnqueue(3));
+        assertEquals(Optional.of(1), queue.dequeue(0));
+        assertTrue(queue.tryEnqueue(3));
+        assertEquals(2, queue.getCount());
+    }
+
+    @Test
+    public void message_handed_to_waiting_dequeuer_does_not_count_to_capacity() throws InterruptedException {
+        var queue = new SimpleMessageQueue<Integer>(1);
+        var received = new AtomicReference<Optional<Integer>>();
+        var th = new Thread(() -> {
+            try {
+                received.set(queue.dequeue(10_000));
+            } catch (InterruptedException e) {
+                // ends the thread
+            }
+        });
+        th.start();
+        // waits for the dequeuer to be blocked
+        while (th.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+
+        assertTrue(queue.tryEnqueue(1));
+        assertTrue(queue.tryEnqueue(2));
+        th.join();
+        assertEquals(Optional.of(1), received.get());
+        assertEquals(1, queue.getCount());
+    }
+
+    @Test
+    public void batch_dequeue_takes_available_messages_up_to_the_maximum() throws InterruptedException {
+        var queue = new SimpleMessageQueue<Integer>();
+        for (int i = 0; i < 5; ++i) {
+            queue.enqueue(i);
+        }
+
+        assertEquals(List.of(0, 1, 2), queue.dequeueBatch(3, 0));
+        assertEquals(List.of(3, 4), queue.dequeueBatch(3, 0));
+        assertEquals(List.of(), queue.dequeueBatch(3, 10));
+    }
+}
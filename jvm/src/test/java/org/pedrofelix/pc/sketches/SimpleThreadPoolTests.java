@@ -0,0 +1,28 @@
+package org.pedrofelix.pc.sketches;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class SimpleThreadPoolTests {
+
+    @Test
+    public void failing_work_items_do_not_prevent_other_work_items_from_running() throws InterruptedException {
+        var pool = new SimpleThreadPool(1, Integer.MAX_VALUE, 1000);
+        var done = new CountDownLatch(2);
+
+        pool.execute(() -> {
+            throw new IllegalStateException("failing on purpose");
+        });
+        pool.execute(done::countDown);
+        pool.execute(() -> {
+            throw new AssertionError("failing on purpose");
+        });
+        pool.execute(done::countDown);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,119 @@
+package org.pedrofelix.pc.synchronizers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimitTests {
+
+    private static final int WINDOW_SIZE = 16;
+
+    @Test
+    public void limit_increases_when_fully_used_and_latency_is_stable() throws InterruptedException {
+        var limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+        assertTrue(limit.acquire(0));
+        assertTrue(limit.acquire(0));
+        assertFalse(limit.acquire(0));
+        recordWindow(limit, 1_000);
+
+        assertEquals(3, limit.getLimit());
+        assertTrue(limit.acquire(0));
+        assertFalse(limit.acquire(0));
+    }
+
+    @Test
+    public void try_acquire_does_not_wait() {
+        var limit = new AdaptiveConcurrencyLimit(1, 1, 10);
+
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void limit_does_not_increase_when_not_fully_used() throws InterruptedException {
+        var limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+        assertTrue(limit.acquire(0));
+        recordWindow(limit, 1_000);
+
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void limit_decreases_when_latency_increases_and_swallows_released_permits() throws InterruptedException {
+        var limit = new AdaptiveConcurrencyLimit(8, 1, 10);
+        for (int i = 0; i < 8; ++i) {
+            assertTrue(limit.acquire(0));
+        }
+        recordWindow(limit, 1_000);
+        assertEquals(9, limit.getLimit());
+        recordWindow(limit, 10_000);
+        assertEquals(6, limit.getLimit());
+
+        // 1 unit was available and was taken back, 2 are swallowed on release
+        limit.release();
+        limit.release();
+        assertFalse(limit.acquire(0));
+        limit.release();
+        assertTrue(limit.acquire(0));
+        assertEquals(6, limit.getInUse());
+    }
+
+    @Test
+    public void limit_does_not_go_below_min() throws InterruptedException {
+        var limit = new AdaptiveConcurrencyLimit(2, 2, 10);
+        recordWindow(limit, 1_000);
+        recordWindow(limit, 100_000);
+
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.acquire(0));
+        assertTrue(limit.acquire(0));
+    }
+
+    @Test
+    public void lasting_latency_increase_becomes_the_new_baseline() {
+        var limit = new AdaptiveConcurrencyLimit(8, 1, 10);
+        recordWindow(limit, 1_000);
+        for (int i = 0; i < 10; ++i) {
+            recordWindow(limit, 3_000);
+        }
+
+        // 8 -> 6 -> 4 -> 3, and then the baseline caught up with the new latency
+        assertEquals(3, limit.getLimit());
+        recordWindow(limit, 3_000);
+        assertEquals(3, limit.getLimit());
+    }
+
+    @Test
+    public void windows_are_closed_with_concurrent_samples() throws InterruptedException {
+        var limit = new AdaptiveConcurrencyLimit(8, 1, 10);
+        recordWindow(limit, 1_000);
+        var threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 4; ++j) {
+                    recordWindow(limit, 100_000);
+                }
+            });
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        // a window may include the samples added while it was being closed, so fewer than 16 windows may be closed,
+        // but the first 5 are enough to decrease the limit to the minimum: 8 -> 6 -> 4 -> 3 -> 2 -> 1
+        assertEquals(1, limit.getLimit());
+    }
+
+    private static void recordWindow(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+        for (int i = 0; i < WINDOW_SIZE; ++i) {
+            limit.onSample(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.pedrofelix.pc.synchronizers;
+
+import org.junit.Test;
+import org.pedrofelix.pc.utils.TestHelper;
+
+import java.time.Duration;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CombiningTreeBarrierTests {
+
+    private static final int N_OF_THREADS = 10;
+    private static final int N_OF_PHASES = 1000;
+    private static final Duration TEST_DURATION = Duration.ofSeconds(10);
+
+    @Test
+    public void no_party_starts_a_phase_before_all_parties_complete_the_previous_one() throws InterruptedException {
+        AtomicInteger arrivals = new AtomicInteger(0);
+        CombiningTreeBarrier barrier = new CombiningTreeBarrier(N_OF_THREADS, 2, null);
+        TestHelper helper = new TestHelper(TEST_DURATION);
+
+        helper.createAndStartMultiple(N_OF_THREADS, (ignore, isDone) -> {
+            for (int phase = 0; phase < N_OF_PHASES; ++phase) {
+                int current = arrivals.incrementAndGet();
+                assertTrue("arrivals must belong to the current phase",
+                        current > phase * N_OF_THREADS && current <= (phase + 1) * N_OF_THREADS);
+                assertTrue("await must succeed", barrier.await(TEST_DURATION.toMillis()));
+            }
+        });
+
+        helper.join();
+        assertEquals(N_OF_THREADS * N_OF_PHASES, arrivals.get());
+        assertEquals(N_OF_PHASES, barrier.getPhase());
+    }
+
+    @Test
+    public void barrier_action_runs_once_per_phase() throws InterruptedException {
+        AtomicInteger actions = new AtomicInteger(0);
+        CombiningTreeBarrier barrier = new CombiningTreeBarrier(N_OF_THREADS, 3, actions::incrementAndGet);
+        TestHelper helper = new TestHelper(TEST_DURATION);
+
+        helper.createAndStartMultiple(N_OF_THREADS, (ignore, isDone) -> {
+            for (int phase = 0; phase < N_OF_PHASES; ++phase) {
+                assertTrue("await must succeed", barrier.await(TEST_DURATION.toMillis()));
+            }
+        });
+
+        helper.join();
+        assertEquals(N_OF_PHASES, actions.get());
+    }
+
+    @Test
+    public void timeout_breaks_the_barrier() throws Exception {
+        CombiningTreeBarrier barrier = new CombiningTreeBarrier(2);
+
+        assertFalse(barrier.await(100));
+        assertTrue(barrier.isBroken());
+        try {
+            barrier.await(100);
+            throw new AssertionError("await on a broken barrier must throw");
+        } catch (BrokenBarrierException e) {
+            // expected
+        }
+    }
+}
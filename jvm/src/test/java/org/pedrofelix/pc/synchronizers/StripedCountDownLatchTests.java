@@ -0,0 +1,47 @@
+package org.pedrofelix.pc.synchronizers;
+
+import org.junit.Test;
+import org.pedrofelix.pc.utils.TestHelper;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StripedCountDownLatchTests {
+
+    private static final int N_OF_THREADS = 10;
+    private static final int N_OF_COUNT_DOWNS = 10_000;
+    private static final Duration TEST_DURATION = Duration.ofSeconds(10);
+
+    @Test
+    public void opens_only_after_all_count_downs() throws InterruptedException {
+        StripedCountDownLatch latch = new StripedCountDownLatch(N_OF_THREADS * N_OF_COUNT_DOWNS, 4);
+        TestHelper helper = new TestHelper(TEST_DURATION);
+
+        assertFalse(latch.await(0));
+        helper.createAndStartMultiple(N_OF_THREADS, (ignore, isDone) -> {
+            for (int i = 0; i < N_OF_COUNT_DOWNS; ++i) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(TEST_DURATION.toMillis()));
+        assertEquals(0, latch.getCount());
+        helper.join();
+    }
+
+    @Test
+    public void await_times_out_while_not_open() throws InterruptedException {
+        StripedCountDownLatch latch = new StripedCountDownLatch(2);
+
+        latch.countDown();
+        assertFalse(latch.await(100));
+        latch.countDown();
+        assertTrue(latch.await(100));
+        // extra count downs are ignored
+        latch.countDown();
+        assertEquals(0, latch.getCount());
+    }
+}
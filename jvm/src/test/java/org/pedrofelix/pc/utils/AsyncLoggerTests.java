@@ -0,0 +1,41 @@
+package org.pedrofelix.pc.utils;
+
+import org.junit.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLoggerTests {
+
+    private static final int MAX_PER_SECOND = 100;
+    private static final int N_THREADS = 4;
+    private static final int CALLS_PER_THREAD = 50_000;
+
+    @Test
+    public void sampling_does_not_exceed_the_maximum_rate_with_concurrent_callers() throws InterruptedException {
+        var logger = new AsyncLogger(NOPLogger.NOP_LOGGER, AsyncLogger.Mode.SAMPLED, 64 * 1024, MAX_PER_SECOND);
+        var threads = new ArrayList<Thread>();
+        long start = System.nanoTime();
+        for (int i = 0; i < N_THREADS; ++i) {
+            var th = new Thread(() -> {
+                for (int j = 0; j < CALLS_PER_THREAD; ++j) {
+                    logger.info("message {}", j);
+                }
+            });
+            th.start();
+            threads.add(th);
+        }
+        for (var th : threads) {
+            th.join();
+        }
+        // the windows are fixed, so even a short run can span two of them
+        long windows = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + 2;
+
+        long accepted = N_THREADS * CALLS_PER_THREAD - logger.getSampledOutCount();
+        assertTrue("accepted " + accepted + " in " + windows + " windows",
+                accepted > 0 && accepted <= MAX_PER_SECOND * windows);
+    }
+}
@@ -0,0 +1,75 @@
+package org.pedrofelix.pc.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedTimingWheelTests {
+
+    private static final int N_OF_TIMEOUTS = 100_000;
+
+    @Test
+    public void timeout_expires_after_delay() throws InterruptedException {
+        var wheel = new HashedTimingWheel(10, 8);
+        var latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // more than one round of the wheel
+        var timeout = wheel.schedule(latch::countDown, 200);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        wheel.stop();
+    }
+
+    @Test
+    public void cancelled_timeout_does_not_expire() throws InterruptedException {
+        var wheel = new HashedTimingWheel(10, 8);
+        var expired = new AtomicInteger();
+
+        var timeout = wheel.schedule(expired::incrementAndGet, 50);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        Thread.sleep(200);
+
+        assertEquals(0, expired.get());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.getPendingTimeouts());
+        wheel.stop();
+    }
+
+    @Test
+    public void tracks_many_timeouts() throws InterruptedException {
+        var wheel = new HashedTimingWheel(10, 512);
+        var expired = new AtomicInteger();
+        var latch = new CountDownLatch(N_OF_TIMEOUTS / 2);
+        List<HashedTimingWheel.Timeout> timeouts = new ArrayList<>(N_OF_TIMEOUTS);
+
+        for (int i = 0; i < N_OF_TIMEOUTS; ++i) {
+            timeouts.add(wheel.schedule(() -> {
+                expired.incrementAndGet();
+                latch.countDown();
+            }, 1_000 + i % 500));
+        }
+        assertEquals(N_OF_TIMEOUTS, wheel.getPendingTimeouts());
+        for (int i = 0; i < N_OF_TIMEOUTS; i += 2) {
+            assertTrue(timeouts.get(i).cancel());
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(N_OF_TIMEOUTS / 2, expired.get());
+        assertEquals(0, wheel.getPendingTimeouts());
+        wheel.stop();
+    }
+}
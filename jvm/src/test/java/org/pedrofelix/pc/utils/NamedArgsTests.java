@@ -0,0 +1,27 @@
+package org.pedrofelix.pc.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class NamedArgsTests {
+
+    @Test
+    public void values_are_parsed_or_defaulted() {
+        var args = NamedArgs.parse(new String[]{"--name=a=b", "--count=3", "--unit=seconds", "--empty="});
+
+        assertEquals("a=b", args.stringOrDefault("name", "x"));
+        assertEquals("", args.stringOrDefault("empty", "x"));
+        assertEquals(3, args.intOrDefault("count", 1));
+        assertEquals(7L, args.longOrDefault("missing", 7L));
+        assertEquals(TimeUnit.SECONDS, args.enumOrDefault("unit", TimeUnit.MILLISECONDS));
+        assertEquals(TimeUnit.MILLISECONDS, args.enumOrDefault("other-unit", TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void arguments_must_have_the_name_value_form() {
+        NamedArgs.parse(new String[]{"--count"});
+    }
+}